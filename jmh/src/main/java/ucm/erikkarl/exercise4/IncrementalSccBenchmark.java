@@ -0,0 +1,88 @@
+package ucm.erikkarl.exercise4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ucm.erikkarl.graph.Graph;
+import ucm.erikkarl.graph.RandomGraphGenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide lo que cuesta anadir una a una todas las aristas de un grafo creado con
+ * {@link RandomGraphGenerator}, barajadas, manteniendo sus componentes fuertemente conexas con
+ * {@link DynamicStronglyConnectedComponents}. Como referencia, tambien mide lo que cuesta volver a
+ * ejecutar {@link KosarajusAlgorithm#solve(Graph)} tras cada lote de aristas. El coste amortizado
+ * por arista es el tiempo de cada operacion dividido entre el numero de aristas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IncrementalSccBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"5000"})
+    public int nodes;
+    @Param({"100"})
+    public int batchSize;
+
+    private List<Integer> nodeList;
+    private List<int[]> edges;
+
+    @Setup
+    public void setUp() {
+        var generated = new RandomGraphGenerator(nodes).createGraph();
+        nodeList = new ArrayList<>();
+        edges = new ArrayList<>();
+        for (Map.Entry<Integer, Set<Integer>> entry : generated) {
+            nodeList.add(entry.getKey());
+            for (Integer adj : entry.getValue())
+                edges.add(new int[]{entry.getKey(), adj});
+        }
+        Collections.shuffle(edges, new Random(SEED));
+    }
+
+    @Benchmark
+    public int incremental() {
+        var incremental = new DynamicStronglyConnectedComponents(emptyGraph());
+        for (int[] edge : edges)
+            incremental.addEdge(edge[0], edge[1]);
+        return incremental.getNumberOfComponents();
+    }
+
+    @Benchmark
+    public int kosarajuPerBatch() {
+        var graph = emptyGraph();
+        int components = 0;
+        for (int i = 0; i < edges.size(); i++) {
+            graph.addEdges(edges.get(i)[0], List.of(edges.get(i)[1]));
+            if ((i + 1) % batchSize == 0 || i == edges.size() - 1)
+                components = KosarajusAlgorithm.solve(graph).size();
+        }
+        return components;
+    }
+
+    private Graph<Integer> emptyGraph() {
+        var graph = new Graph<Integer>();
+        for (Integer node : nodeList)
+            graph.addNode(node);
+        return graph;
+    }
+}
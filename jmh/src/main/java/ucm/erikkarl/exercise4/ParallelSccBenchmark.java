@@ -0,0 +1,92 @@
+package ucm.erikkarl.exercise4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.CompactGraph;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el tiempo de {@link KosarajusAlgorithm} con el de {@link ForwardBackwardAlgorithm} con
+ * distinto numero de hilos sobre un grafo aleatorio con bucles. La aceleracion respecto a Kosaraju
+ * es el cociente entre sus tiempos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelSccBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"2000000"})
+    public int nodes;
+    @Param({"5"})
+    public int edgesPerNode;
+
+    private CompactGraph graph;
+
+    @State(Scope.Benchmark)
+    public static class Pool {
+        @Param({"1", "2", "4", "8"})
+        public int threads;
+
+        ForkJoinPool pool;
+
+        @Setup
+        public void setUp() {
+            pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        graph = randomGraph(nodes, edgesPerNode);
+    }
+
+    @Benchmark
+    public List<Either<Integer, List<Integer>>> kosaraju() {
+        return KosarajusAlgorithm.solve(graph);
+    }
+
+    @Benchmark
+    public List<Either<Integer, List<Integer>>> forwardBackward(Pool state) {
+        return ForwardBackwardAlgorithm.solve(graph, state.pool);
+    }
+
+    /**
+     * Crea un grafo con <code>edgesPerNode</code> aristas aleatorias por nodo. Con mas de una arista
+     * por nodo casi todos los nodos acaban en una componente gigante.
+     */
+    private static CompactGraph randomGraph(int nodes, int edgesPerNode) {
+        var random = new SplittableRandom(SEED);
+        var builder = new CompactGraph.Builder();
+        var adjacents = new int[edgesPerNode];
+        for (int node = 0; node < nodes; node++) {
+            for (int i = 0; i < edgesPerNode; i++)
+                adjacents[i] = random.nextInt(nodes);
+            builder.addEdges(node, adjacents);
+        }
+        return builder.build();
+    }
+}
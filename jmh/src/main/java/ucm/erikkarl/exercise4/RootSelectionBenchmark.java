@@ -0,0 +1,70 @@
+package ucm.erikkarl.exercise4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.CompactGraph;
+import ucm.erikkarl.graph.Graph;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prueba de regresion para la eleccion de raices de las busquedas en profundidad. Ejecuta los
+ * algoritmos sobre bosques de nodos aislados (un arbol por nodo, el peor caso para elegir raices)
+ * de tamano creciente hasta llegar a 1M de nodos.
+ * <p>
+ * Si la eleccion de raices es lineal, el tiempo por nodo se mantiene mas o menos constante y cada
+ * vez que se duplica el numero de nodos el tiempo tambien se duplica. Con el recorrido anterior,
+ * que buscaba el primer nodo sin visitar desde el principio del mapa, se multiplicaba por cuatro.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RootSelectionBenchmark {
+    @Param({"62500", "125000", "250000", "500000", "1000000"})
+    public int nodes;
+
+    private Graph<Integer> graph;
+    private CompactGraph compact;
+
+    @Setup
+    public void setUp() {
+        graph = new Graph<>();
+        for (int i = 1; i <= nodes; i++)
+            graph.addNode(i);
+        compact = CompactGraph.from(graph);
+    }
+
+    @Benchmark
+    public List<Either<Integer, List<Integer>>> topologicalOrdering() {
+        return TopologicalOrdering.solve(graph);
+    }
+
+    @Benchmark
+    public List<Either<Integer, List<Integer>>> kosaraju() {
+        return KosarajusAlgorithm.solve(graph);
+    }
+
+    @Benchmark
+    public List<Either<Integer, List<Integer>>> exercise4() {
+        return Exercise4.solve(graph);
+    }
+
+    @Benchmark
+    public List<Either<Integer, List<Integer>>> exercise4Compact() {
+        return Exercise4.solve(compact);
+    }
+}
@@ -0,0 +1,115 @@
+package ucm.erikkarl.exercise4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.BenchmarkGraphs;
+import ucm.erikkarl.graph.CompactGraph;
+import ucm.erikkarl.graph.Graph;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide los algoritmos que calculan el orden topologico o las componentes fuertemente conexas de
+ * un grafo, segun su numero de nodos, el numero de aristas por nodo y si tiene bucles.
+ * {@link TopologicalOrdering} solo funciona con grafos sin bucles, asi que se mide con su propio
+ * estado. {@link Exercise4#solveInParallel(CompactGraph, ForkJoinPool)} se mide ademas con distinto
+ * numero de hilos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SolverBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class AnyGraph {
+        @Param({"1000", "100000"})
+        public int nodes;
+        @Param({"2", "8"})
+        public int edgesPerNode;
+        @Param({"ACYCLIC", "CYCLIC"})
+        public BenchmarkGraphs.Shape shape;
+
+        Graph<Integer> graph;
+
+        @Setup
+        public void setUp() {
+            graph = BenchmarkGraphs.create(nodes, edgesPerNode, shape);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class AcyclicGraph {
+        @Param({"1000", "100000"})
+        public int nodes;
+        @Param({"2", "8"})
+        public int edgesPerNode;
+
+        Graph<Integer> graph;
+
+        @Setup
+        public void setUp() {
+            graph = BenchmarkGraphs.create(nodes, edgesPerNode, BenchmarkGraphs.Shape.ACYCLIC);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ParallelGraph {
+        @Param({"100000"})
+        public int nodes;
+        @Param({"2", "8"})
+        public int edgesPerNode;
+        @Param({"ACYCLIC", "CYCLIC"})
+        public BenchmarkGraphs.Shape shape;
+        @Param({"1", "4"})
+        public int threads;
+
+        CompactGraph graph;
+        ForkJoinPool pool;
+
+        @Setup
+        public void setUp() {
+            graph = CompactGraph.from(BenchmarkGraphs.create(nodes, edgesPerNode, shape));
+            pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public List<Either<Integer, List<Integer>>> exercise4(AnyGraph state) {
+        return Exercise4.solve(state.graph);
+    }
+
+    @Benchmark
+    public List<Either<Integer, List<Integer>>> kosaraju(AnyGraph state) {
+        return KosarajusAlgorithm.solve(state.graph);
+    }
+
+    @Benchmark
+    public List<Either<Integer, List<Integer>>> topologicalOrdering(AcyclicGraph state) {
+        return TopologicalOrdering.solve(state.graph);
+    }
+
+    @Benchmark
+    public List<Either<Integer, List<Integer>>> exercise4InParallel(ParallelGraph state) {
+        return Exercise4.solveInParallel(state.graph, state.pool);
+    }
+}
@@ -0,0 +1,51 @@
+package ucm.erikkarl.graph;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Grafos aleatorios para los benchmarks. A diferencia de {@link RandomGraphGenerator} se puede elegir
+ * cuantas aristas tiene cada nodo y si el grafo tiene bucles, y con la misma semilla siempre se crea
+ * el mismo grafo, asi que los resultados de distintas ejecuciones se pueden comparar.
+ */
+public final class BenchmarkGraphs {
+    public static final long SEED = 42;
+
+    public enum Shape {
+        /**
+         * Cada nodo solo tiene aristas hacia nodos mayores que el, asi que no hay bucles.
+         */
+        ACYCLIC,
+        /**
+         * Cada nodo tiene aristas hacia cualquier otro nodo.
+         */
+        CYCLIC
+    }
+
+    private BenchmarkGraphs() {
+    }
+
+    /**
+     * Crea un grafo con los nodos <code>1..nodes</code> y hasta <code>edgesPerNode</code> aristas
+     * por nodo.
+     */
+    public static Graph<Integer> create(int nodes, int edgesPerNode, Shape shape) {
+        var random = new SplittableRandom(SEED);
+        var graph = new Graph<Integer>();
+        var adjacents = new ArrayList<Integer>(edgesPerNode);
+
+        for (int node = 1; node <= nodes; node++) {
+            adjacents.clear();
+            for (int i = 0; i < edgesPerNode && (shape == Shape.CYCLIC || node < nodes); i++) {
+                int adj = shape == Shape.ACYCLIC
+                        ? random.nextInt(node + 1, nodes + 1)
+                        : random.nextInt(1, nodes + 1);
+                if (adj != node)
+                    adjacents.add(adj);
+            }
+            graph.addNode(node);
+            graph.addEdges(node, adjacents);
+        }
+        return graph;
+    }
+}
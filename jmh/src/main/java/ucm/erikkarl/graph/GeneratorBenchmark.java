@@ -0,0 +1,41 @@
+package ucm.erikkarl.graph;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide lo que cuesta crear grafos con {@link RandomGraphGenerator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GeneratorBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int nodes;
+
+    private RandomGraphGenerator generator;
+
+    @Setup
+    public void setUp() {
+        generator = new RandomGraphGenerator(nodes);
+    }
+
+    @Benchmark
+    public Graph<Integer> createGraph() {
+        return generator.createGraph();
+    }
+}
@@ -0,0 +1,89 @@
+package ucm.erikkarl.tests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucm.erikkarl.graph.BenchmarkGraphs;
+import ucm.erikkarl.graph.CompactGraph;
+import ucm.erikkarl.graph.Graph;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Mide lo que cuesta escribir un grafo como texto con {@link TestManager#graphToString(Graph)} y
+ * volver a leerlo como lo hacen los tests, con {@link TestFileParser#stream(File)} si el fichero es
+ * de texto o con {@link BinaryTestFile#stream(File)} si es binario.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TestFileBenchmark {
+    @Param({"1000", "100000"})
+    public int nodes;
+    @Param({"2", "8"})
+    public int edgesPerNode;
+
+    private Graph<Integer> graph;
+    private File file;
+    private File binaryFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        graph = BenchmarkGraphs.create(nodes, edgesPerNode, BenchmarkGraphs.Shape.CYCLIC);
+        file = File.createTempFile("benchmark", ".txt");
+        try (var writer = new FileWriter(file)) {
+            writer.write(TestManager.graphToString(graph));
+        }
+        binaryFile = File.createTempFile("benchmark", ".bin");
+        BinaryTestFile.write(Stream.of(CompactGraph.from(graph)), binaryFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        binaryFile.delete();
+    }
+
+    @Benchmark
+    public String graphToString() {
+        return TestManager.graphToString(graph);
+    }
+
+    @Benchmark
+    public long streamText() throws IOException {
+        try (var graphs = TestFileParser.stream(file)) {
+            return countEdges(graphs);
+        }
+    }
+
+    @Benchmark
+    public long streamBinary() throws IOException {
+        try (var graphs = BinaryTestFile.stream(binaryFile)) {
+            return countEdges(graphs);
+        }
+    }
+
+    /**
+     * Recorre todos los grafos leidos. Devuelve el numero total de aristas para que no se descarte
+     * la lectura.
+     */
+    private static long countEdges(Stream<CompactGraph> graphs) {
+        return graphs.mapToLong(CompactGraph::getNumberOfEdges).sum();
+    }
+}
@@ -0,0 +1,31 @@
+package ucm.erikkarl.exercise4;
+
+import org.junit.jupiter.api.Test;
+import ucm.erikkarl.graph.CompactGraph;
+import ucm.erikkarl.graph.Graph;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CondensationTest {
+    @Test
+    void countsEdgesFromANodeToItselfAsLoops() {
+        var graph = new Graph<Integer>();
+        graph.addEdges(1, List.of(2));
+        graph.addEdges(2, List.of(3));
+        var acyclic = Exercise4.condense(CompactGraph.from(graph));
+        assertTrue(acyclic.isAcyclic());
+        assertTrue(acyclic.toSolveResult().hasOnlySingletonComponents());
+
+        graph.addEdges(3, List.of(3));
+        var selfLoop = Exercise4.condense(CompactGraph.from(graph));
+        assertFalse(selfLoop.isAcyclic());
+        // Cada nodo sigue siendo su propia componente
+        assertTrue(selfLoop.toSolveResult().hasOnlySingletonComponents());
+
+        graph.addEdges(3, List.of(1));
+        assertFalse(Exercise4.condense(CompactGraph.from(graph)).isAcyclic());
+    }
+}
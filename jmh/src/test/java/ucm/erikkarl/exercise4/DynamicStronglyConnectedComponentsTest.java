@@ -0,0 +1,86 @@
+package ucm.erikkarl.exercise4;
+
+import org.junit.jupiter.api.Test;
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.Graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba despues de cada arista anadida al azar que {@link DynamicStronglyConnectedComponents}
+ * tiene las mismas aristas y componentes que {@link KosarajusAlgorithm} calcula desde cero, y que
+ * sus componentes estan en orden topologico.
+ */
+class DynamicStronglyConnectedComponentsTest {
+    @Test
+    void matchesKosarajuAfterEveryEdge() {
+        var random = new SplittableRandom(42);
+        for (int round = 0; round < 10; round++) {
+            int nodes = 2 + random.nextInt(60);
+            var graph = new Graph<Integer>();
+            var incremental = new DynamicStronglyConnectedComponents();
+            for (int i = 0; i < nodes * 3; i++) {
+                int from = random.nextInt(nodes);
+                int to = random.nextInt(nodes);
+                graph.addEdges(from, List.of(to));
+                incremental.addEdge(from, to);
+
+                var components = incremental.getComponents();
+                assertEquals(graph.getNumberOfEdges(), incremental.getNumberOfEdges());
+                assertEquals(components(KosarajusAlgorithm.solve(graph)), components(components));
+                assertEquals(components.size(), incremental.getNumberOfComponents());
+                assertTopologicalOrder(graph, components);
+            }
+        }
+    }
+
+    @Test
+    void startsWithTheComponentsOfAGraph() {
+        var random = new SplittableRandom(7);
+        var graph = new Graph<Integer>();
+        for (int i = 0; i < 300; i++)
+            graph.addEdges(random.nextInt(100), List.of(random.nextInt(100)));
+        var incremental = new DynamicStronglyConnectedComponents(graph);
+        assertEquals(graph.getNumberOfEdges(), incremental.getNumberOfEdges());
+        assertEquals(components(KosarajusAlgorithm.solve(graph)), components(incremental.getComponents()));
+        assertTopologicalOrder(graph, incremental.getComponents());
+    }
+
+    private static Set<Set<Integer>> components(List<Either<Integer, List<Integer>>> solution) {
+        var result = new HashSet<Set<Integer>>();
+        for (var component : solution)
+            result.add(nodes(component));
+        return result;
+    }
+
+    private static Set<Integer> nodes(Either<Integer, List<Integer>> component) {
+        if (component instanceof Either.Right)
+            return new HashSet<>(((Either.Right<Integer, List<Integer>>) component).getValue());
+        return Set.of(((Either.Left<Integer, List<Integer>>) component).getValue());
+    }
+
+    /**
+     * Comprueba que ninguna arista va de una componente a otra anterior.
+     */
+    private static void assertTopologicalOrder(Graph<Integer> graph, List<Either<Integer, List<Integer>>> solution) {
+        Map<Integer, Integer> componentOf = new HashMap<>();
+        int c = 0;
+        for (var component : solution) {
+            for (Integer node : nodes(component))
+                componentOf.put(node, c);
+            c++;
+        }
+        for (var entry : graph) {
+            for (Integer adj : entry.getValue())
+                assertTrue(componentOf.get(entry.getKey()) <= componentOf.get(adj), entry.getKey() + " -> " + adj);
+        }
+    }
+}
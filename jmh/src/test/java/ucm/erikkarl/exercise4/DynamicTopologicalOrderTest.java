@@ -0,0 +1,85 @@
+package ucm.erikkarl.exercise4;
+
+import org.junit.jupiter.api.Test;
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.Graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DynamicTopologicalOrderTest {
+    @Test
+    void rejectsGraphsWithEdgesFromANodeToItself() {
+        var graph = new Graph<Integer>();
+        graph.addEdges(1, List.of(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> new DynamicTopologicalOrder(graph));
+    }
+
+    @Test
+    void keepsTheEdgesOfAnAcyclicGraph() {
+        var graph = new Graph<Integer>();
+        graph.addEdges(3, List.of(1, 2));
+        graph.addEdges(1, List.of(2));
+        var order = new DynamicTopologicalOrder(graph);
+        assertEquals(3, order.getNumberOfEdges());
+        assertEquals(List.of(3, 1, 2), order.getOrder());
+        assertFalse(order.addEdge(2, 2));
+        assertFalse(order.addEdge(2, 3));
+    }
+
+    /**
+     * Anade aristas al azar y comprueba despues de cada una que se rechaza justo cuando cerraria un
+     * bucle y que el orden sigue siendo topologico, lo que obliga a reordenar muchas veces.
+     */
+    @Test
+    void keepsATopologicalOrderWhileAddingRandomEdges() {
+        var random = new SplittableRandom(2024);
+        for (int round = 0; round < 20; round++) {
+            int nodes = 2 + random.nextInt(40);
+            var order = new DynamicTopologicalOrder();
+            List<int[]> accepted = new ArrayList<>();
+            for (int i = 0; i < nodes * 4; i++) {
+                int from = random.nextInt(nodes);
+                int to = random.nextInt(nodes);
+                boolean closesLoop = from == to || hasLoop(accepted, from, to);
+
+                assertEquals(!closesLoop, order.addEdge(from, to), from + " -> " + to);
+                if (!closesLoop)
+                    accepted.add(new int[]{from, to});
+                assertTopologicalOrder(order.getOrder(), accepted);
+            }
+        }
+    }
+
+    /**
+     * Indica si {@link Exercise4#solve(Graph)} encuentra algun bucle en el grafo con las aristas
+     * <code>edges</code> y <code>from -> to</code>.
+     */
+    private static boolean hasLoop(List<int[]> edges, int from, int to) {
+        var graph = new Graph<Integer>();
+        for (var edge : edges)
+            graph.addEdges(edge[0], List.of(edge[1]));
+        graph.addEdges(from, List.of(to));
+        for (var component : Exercise4.solve(graph)) {
+            if (component instanceof Either.Right)
+                return true;
+        }
+        return false;
+    }
+
+    private static void assertTopologicalOrder(List<Integer> order, List<int[]> edges) {
+        Map<Integer, Integer> position = new HashMap<>();
+        for (int i = 0; i < order.size(); i++)
+            position.put(order.get(i), i);
+        for (var edge : edges)
+            assertTrue(position.get(edge[0]) < position.get(edge[1]), edge[0] + " -> " + edge[1]);
+    }
+}
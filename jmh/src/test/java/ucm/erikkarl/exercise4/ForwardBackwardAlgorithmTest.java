@@ -0,0 +1,91 @@
+package ucm.erikkarl.exercise4;
+
+import org.junit.jupiter.api.Test;
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.CompactGraph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba que {@link ForwardBackwardAlgorithm}, que se basa en carreras de datos benignas entre
+ * sus tareas, calcula las mismas componentes que {@link KosarajusAlgorithm} y en un orden
+ * topologico valido, tanto en grafos pequenos como en grafos que se reparten entre varios hilos.
+ */
+class ForwardBackwardAlgorithmTest {
+    private static final int GRAPHS = 400;
+
+    @Test
+    void matchesKosarajuOnRandomGraphs() {
+        var random = new SplittableRandom(42);
+        var pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < GRAPHS; i++) {
+                // Algunos grafos superan el umbral a partir del cual se dividen entre tareas
+                int nodes = i % 10 == 0 ? 5_000 + random.nextInt(20_000) : 1 + random.nextInt(300);
+                double edgesPerNode = random.nextDouble() * 3;
+                var graph = randomGraph(random, nodes, edgesPerNode);
+
+                var expected = KosarajusAlgorithm.solve(graph);
+                var actual = ForwardBackwardAlgorithm.solve(graph, pool);
+                assertEquals(components(expected), components(actual), "graph " + i);
+                assertTopologicalOrder(graph, actual);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static CompactGraph randomGraph(SplittableRandom random, int nodes, double edgesPerNode) {
+        var builder = new CompactGraph.Builder();
+        var adjacents = new int[(int) Math.ceil(edgesPerNode) + 1];
+        for (int node = 0; node < nodes; node++) {
+            int count = random.nextInt(adjacents.length);
+            for (int e = 0; e < count; e++)
+                adjacents[e] = random.nextInt(nodes);
+            builder.addEdges(node, adjacents, count);
+        }
+        return builder.build();
+    }
+
+    private static Set<Set<Integer>> components(List<Either<Integer, List<Integer>>> solution) {
+        var result = new HashSet<Set<Integer>>();
+        for (var component : solution)
+            result.add(nodes(component));
+        return result;
+    }
+
+    private static Set<Integer> nodes(Either<Integer, List<Integer>> component) {
+        if (component instanceof Either.Right)
+            return new HashSet<>(((Either.Right<Integer, List<Integer>>) component).getValue());
+        return Set.of(((Either.Left<Integer, List<Integer>>) component).getValue());
+    }
+
+    /**
+     * Comprueba que ninguna arista va de una componente a otra anterior.
+     */
+    private static void assertTopologicalOrder(CompactGraph graph, List<Either<Integer, List<Integer>>> solution) {
+        Map<Integer, Integer> componentOf = new HashMap<>();
+        int c = 0;
+        for (var component : solution) {
+            for (Integer node : nodes(component))
+                componentOf.put(node, c);
+            c++;
+        }
+        for (int i = 0; i < graph.getNumberOfNodes(); i++) {
+            for (int e = graph.edgesStart(i); e < graph.edgesEnd(i); e++) {
+                int from = componentOf.get(graph.label(i));
+                int to = componentOf.get(graph.label(graph.edgeTarget(e)));
+                assertTrue(from <= to, "edge " + graph.label(i) + " -> " + graph.label(graph.edgeTarget(e)));
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ucm.erikkarl.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GraphTest {
+    @Test
+    void doesNotHandOutModifiableSets() {
+        var graph = new Graph<Integer>();
+        graph.addEdges(1, List.of(2));
+        var transpose = graph.transpose();
+
+        assertThrows(UnsupportedOperationException.class, () -> graph.adjacentNodes(1).add(3));
+        var entry = graph.iterator().next();
+        assertThrows(UnsupportedOperationException.class, () -> entry.getValue().add(3));
+        assertThrows(UnsupportedOperationException.class, () -> entry.setValue(Set.of()));
+        assertThrows(UnsupportedOperationException.class, () -> transpose.addEdges(2, List.of(3)));
+        assertThrows(UnsupportedOperationException.class, () -> transpose.adjacentNodes(2).clear());
+
+        assertEquals(Set.of(1), graph.transpose().adjacentNodes(2));
+    }
+
+    @Test
+    void rebuildsTheTransposeAfterAddingEdges() {
+        var graph = new Graph<Integer>();
+        graph.addEdges(1, List.of(2));
+        assertEquals(Set.of(1), graph.transpose().adjacentNodes(2));
+
+        graph.addEdges(3, List.of(2));
+        assertEquals(Set.of(1, 3), graph.transpose().adjacentNodes(2));
+        assertEquals(2, graph.transpose().getNumberOfEdges());
+    }
+
+    @Test
+    void givesTheSameAdjacentNodesAsTheIterator() throws IOException {
+        var graph = new Graph<Integer>();
+        graph.addEdges(5, List.of(3, 1));
+        graph.addEdges(1, IntStream.range(10, 50).boxed().collect(Collectors.toList()));
+        graph.addEdges(3, List.of(5));
+
+        List<String> expected = new ArrayList<>();
+        for (var entry : graph)
+            expected.add(entry.getKey() + " " + entry.getValue());
+        List<String> actual = new ArrayList<>();
+        Graph.forEachAdjacency(graph, (node, adjacents, count) ->
+                actual.add(node + " " + Arrays.toString(Arrays.copyOf(adjacents, count))));
+        assertEquals(expected, actual);
+    }
+}
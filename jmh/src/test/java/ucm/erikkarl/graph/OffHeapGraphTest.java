@@ -0,0 +1,107 @@
+package ucm.erikkarl.graph;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ucm.erikkarl.exercise4.Exercise4;
+import ucm.erikkarl.exercise4.SolveResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Comprueba que un {@link OffHeapGraph}, se cree como se cree, tiene los mismos nodos y aristas que
+ * el {@link CompactGraph} del que sale y da la misma solucion con
+ * {@link Exercise4#solveIndexed(IndexedGraph)}.
+ */
+class OffHeapGraphTest {
+    private static final int GRAPHS = 50;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void solvesLikeTheGraphOnTheHeap() throws IOException {
+        var random = new SplittableRandom(7);
+        for (int i = 0; i < GRAPHS; i++) {
+            var file = directory.resolve("graph-" + i + ".bin").toFile();
+            var builtFile = directory.resolve("built-" + i + ".bin").toFile();
+            var graph = randomGraph(random, 1 + random.nextInt(2000), random.nextDouble() * 3);
+            var expected = Exercise4.solveIndexed(graph);
+
+            var copy = OffHeapGraph.copyOf(graph);
+            copy.write(file);
+            OffHeapGraph built;
+            try (var builder = new OffHeapGraph.Builder(graph.getNumberOfNodes())) {
+                built = addNodes(builder, graph).build();
+            }
+            OffHeapGraph builtIntoFile;
+            try (var builder = new OffHeapGraph.Builder(graph.getNumberOfNodes(), builtFile)) {
+                builtIntoFile = addNodes(builder, graph).build();
+            }
+
+            for (var offHeap : new IndexedGraph[]{copy, OffHeapGraph.map(file), built, builtIntoFile,
+                    OffHeapGraph.map(builtFile)}) {
+                assertSameGraph(graph, offHeap);
+                assertSameSolution(expected, Exercise4.solveIndexed(offHeap));
+            }
+        }
+    }
+
+    @Test
+    void cannotBeUsedAfterClosingTheBuilder() throws IOException {
+        var builder = new OffHeapGraph.Builder(2, directory.resolve("graph.bin").toFile());
+        builder.addNode(1, new int[]{1}, 1);
+        builder.close();
+        assertThrows(IllegalStateException.class, () -> builder.addNode(2, new int[0], 0));
+        assertThrows(IllegalStateException.class, builder::build);
+    }
+
+    private static OffHeapGraph.Builder addNodes(OffHeapGraph.Builder builder, CompactGraph graph)
+            throws IOException {
+        var adjacents = new int[16];
+        for (int i = 0; i < graph.getNumberOfNodes(); i++) {
+            int count = graph.outDegree(i);
+            if (count > adjacents.length)
+                adjacents = new int[count];
+            for (int e = 0; e < count; e++)
+                adjacents[e] = graph.edgeTarget(graph.edgesStart(i) + e);
+            builder.addNode(graph.label(i), adjacents, count);
+        }
+        return builder;
+    }
+
+    private static CompactGraph randomGraph(SplittableRandom random, int nodes, double edgesPerNode) {
+        var builder = new CompactGraph.Builder();
+        var adjacents = new int[(int) Math.ceil(edgesPerNode) + 1];
+        for (int node = 0; node < nodes; node++) {
+            int count = random.nextInt(adjacents.length);
+            for (int e = 0; e < count; e++)
+                adjacents[e] = 3 * random.nextInt(nodes) + 1;
+            builder.addEdges(3 * node + 1, adjacents, count);
+        }
+        return builder.build();
+    }
+
+    private static void assertSameGraph(IndexedGraph expected, IndexedGraph actual) {
+        assertEquals(expected.getNumberOfNodes(), actual.getNumberOfNodes());
+        assertEquals(expected.getNumberOfEdges(), actual.getNumberOfEdges());
+        for (int i = 0; i < expected.getNumberOfNodes(); i++) {
+            assertEquals(expected.label(i), actual.label(i));
+            assertEquals(expected.edgesStart(i), actual.edgesStart(i));
+            assertEquals(expected.edgesEnd(i), actual.edgesEnd(i));
+        }
+        for (int e = 0; e < expected.getNumberOfEdges(); e++)
+            assertEquals(expected.edgeTarget(e), actual.edgeTarget(e));
+    }
+
+    private static void assertSameSolution(SolveResult expected, SolveResult actual) {
+        assertEquals(expected.order(), actual.order());
+        assertEquals(expected.getNumberOfComponents(), actual.getNumberOfComponents());
+        for (int c = 0; c <= expected.getNumberOfComponents(); c++)
+            assertEquals(expected.componentStart(c), actual.componentStart(c));
+    }
+}
@@ -0,0 +1,64 @@
+package ucm.erikkarl.tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ucm.erikkarl.exercise4.Exercise4;
+import ucm.erikkarl.graph.CompactGraph;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Comprueba que los grafos de un fichero binario se resuelven igual leidos en el heap que copiados
+ * fuera de el con {@link BinaryTestFile#streamOffHeap(java.io.File)}.
+ */
+class BinaryTestFileTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void solvesTheSameGraphsOffHeap() throws IOException {
+        var random = new SplittableRandom(11);
+        List<CompactGraph> graphs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            var builder = new CompactGraph.Builder();
+            int nodes = 1 + random.nextInt(500);
+            for (int node = 0; node < nodes; node++) {
+                int count = random.nextInt(4);
+                var adjacents = new int[count];
+                for (int e = 0; e < count; e++)
+                    adjacents[e] = random.nextInt(nodes) * 5;
+                builder.addEdges(node * 5, adjacents);
+            }
+            graphs.add(builder.build());
+        }
+        var file = directory.resolve("tests.bin").toFile();
+        assertEquals(graphs.size(), BinaryTestFile.write(graphs.stream(), file));
+
+        List<TestResults.Result> onHeap = new ArrayList<>();
+        try (var stream = BinaryTestFile.stream(file)) {
+            TestRunner.runIndexed(stream, onHeap::add);
+        }
+        List<TestResults.Result> offHeap = new ArrayList<>();
+        try (var stream = BinaryTestFile.streamOffHeap(file)) {
+            TestRunner.runIndexed(stream, offHeap::add);
+        }
+
+        assertEquals(graphs.size(), offHeap.size());
+        for (int i = 0; i < graphs.size(); i++) {
+            var expected = onHeap.get(i).getSolveResult();
+            var actual = offHeap.get(i).getSolveResult();
+            assertEquals(expected.order(), actual.order(), "graph " + i);
+            for (int c = 0; c <= expected.getNumberOfComponents(); c++)
+                assertEquals(expected.componentStart(c), actual.componentStart(c), "graph " + i);
+            assertEquals(Exercise4.solveCompact(graphs.get(i)).getNumberOfComponents(),
+                    actual.getNumberOfComponents(), "graph " + i);
+            assertEquals(graphs.get(i).getNumberOfEdges(), offHeap.get(i).getGraphEdgesNumber());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ucm.erikkarl.tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Comprueba que {@link ChannelWriter#writeDecimal(double)} escribe lo mismo que <code>"%f"</code>,
+ * sobre todo con los numeros que estan a mitad de camino entre dos resultados.
+ */
+class ChannelWriterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesDecimalsLikeFormat() throws IOException {
+        List<Double> values = new ArrayList<>(List.of(0.5231775, 0.0000005, 1.0000005, 2.5e-7, 0.1234565,
+                -0.5231775, 0.0, -0.0, -1e-9, 999999.9999995, 1e6, 123456789.1234565, 1e300,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, (double) 0.5231775f));
+        var random = new SplittableRandom(17);
+        for (int i = 0; i < 100000; i++) {
+            // Numeros con siete decimales que acaban en 5, y numeros cualesquiera
+            values.add((random.nextLong(100000000000L) * 10 + 5) / 1e7);
+            values.add(random.nextDouble() * Math.pow(10, random.nextInt(-8, 14)));
+            values.add((double) (float) (random.nextDouble() * 1000));
+        }
+
+        var file = directory.resolve("decimals.txt");
+        try (var writer = new ChannelWriter(file.toFile())) {
+            for (double value : values)
+                writer.writeDecimal(value).write('\n');
+        }
+
+        var lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+        assertEquals(values.size(), lines.size());
+        for (int i = 0; i < values.size(); i++)
+            assertEquals(String.format("%f", values.get(i)), lines.get(i), "value " + values.get(i));
+    }
+}
@@ -0,0 +1,161 @@
+package ucm.erikkarl.tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ucm.erikkarl.exercise4.SolveResult;
+import ucm.erikkarl.graph.GraphFingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultStoreTest {
+    private static final long MAX_BYTES = 1 << 20;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsResultsAddedAfterTheLastFlush() throws IOException {
+        try (var crashed = ResultStore.open(directory.toFile(), MAX_BYTES)) {
+            put(crashed, 0, 3);
+            crashed.flush();
+            put(crashed, 3, 5);
+
+            // Otro almacen sobre el mismo directorio ve lo que habria en disco si el programa se parara aqui
+            try (var store = ResultStore.open(directory.toFile(), MAX_BYTES)) {
+                assertEquals(5, store.size());
+                for (int i = 0; i < 5; i++)
+                    assertStored(store, i);
+            }
+        }
+    }
+
+    @Test
+    void dropsAResultWrittenByHalves() throws IOException {
+        try (var store = ResultStore.open(directory.toFile(), MAX_BYTES)) {
+            put(store, 0, 3);
+        }
+        var segment = segment();
+        long length = segment.length();
+        try (var file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(length - 3);
+        }
+
+        try (var store = ResultStore.open(directory.toFile(), MAX_BYTES)) {
+            assertEquals(2, store.size());
+            assertStored(store, 0);
+            assertStored(store, 1);
+            assertFalse(store.get(fingerprint(2), false).isPresent());
+            put(store, 2, 3);
+        }
+        try (var store = ResultStore.open(directory.toFile(), MAX_BYTES)) {
+            assertEquals(3, store.size());
+            for (int i = 0; i < 3; i++)
+                assertStored(store, i);
+        }
+    }
+
+    @Test
+    void readsAllSegmentsIfTheIndexIsDamaged() throws IOException {
+        try (var store = ResultStore.open(directory.toFile(), MAX_BYTES)) {
+            put(store, 0, 4);
+        }
+        var index = directory.resolve("index");
+        var bytes = Files.readAllBytes(index);
+        bytes[bytes.length / 2] ^= 0x55;
+        Files.write(index, bytes);
+        Files.write(directory.resolve("index.tmp"), new byte[]{1, 2, 3});
+
+        try (var store = ResultStore.open(directory.toFile(), MAX_BYTES)) {
+            assertEquals(4, store.size());
+            for (int i = 0; i < 4; i++)
+                assertStored(store, i);
+        }
+
+        Files.delete(index);
+        try (var store = ResultStore.open(directory.toFile(), MAX_BYTES)) {
+            assertEquals(4, store.size());
+        }
+    }
+
+    @Test
+    void ignoresResultsOfOtherVersionsOfTheAlgorithms() throws IOException {
+        try (var store = ResultStore.open(directory.toFile(), MAX_BYTES, 1)) {
+            put(store, 0, 2);
+        }
+        try (var store = ResultStore.open(directory.toFile(), MAX_BYTES, 2)) {
+            assertEquals(0, store.size());
+            assertFalse(store.get(fingerprint(0), false).isPresent());
+            put(store, 2, 3);
+        }
+        try (var store = ResultStore.open(directory.toFile(), MAX_BYTES, 1)) {
+            assertEquals(2, store.size());
+            assertStored(store, 0);
+            assertFalse(store.get(fingerprint(2), false).isPresent());
+        }
+    }
+
+    @Test
+    void onlyReturnsMeasuredResultsIfAsked() throws IOException {
+        try (var store = ResultStore.open(directory.toFile(), MAX_BYTES)) {
+            store.put(fingerprint(0), result(0), false);
+            assertTrue(store.get(fingerprint(0), false).isPresent());
+            assertFalse(store.get(fingerprint(0), true).isPresent());
+        }
+    }
+
+    /**
+     * Guarda los resultados de <code>from</code> (incluido) a <code>to</code> (excluido).
+     */
+    private static void put(ResultStore store, int from, int to) throws IOException {
+        for (int i = from; i < to; i++)
+            store.put(fingerprint(i), result(i), true);
+    }
+
+    private static void assertStored(ResultStore store, int i) {
+        var stored = store.get(fingerprint(i), true);
+        assertTrue(stored.isPresent(), "Result " + i + " is missing");
+        var expected = result(i).getSolveResult();
+        var actual = stored.get().getSolveResult();
+        assertEquals(i, stored.get().getGraphEdgesNumber());
+        assertEquals(expected.getNumberOfComponents(), actual.getNumberOfComponents());
+        var expectedNodes = new int[expected.getNumberOfNodes()];
+        var actualNodes = new int[actual.getNumberOfNodes()];
+        expected.order().get(expectedNodes);
+        actual.order().get(actualNodes);
+        assertArrayEquals(expectedNodes, actualNodes);
+    }
+
+    private static GraphFingerprint fingerprint(int i) {
+        return new GraphFingerprint(i, ~i);
+    }
+
+    /**
+     * Resultado de un grafo de <code>i + 1</code> nodos con un bucle entre los dos primeros.
+     */
+    private static TestResults.Result result(int i) {
+        int n = i + 1;
+        var nodes = new int[n];
+        for (int node = 0; node < n; node++)
+            nodes[node] = node;
+        var offsets = new int[n == 1 ? 2 : n];
+        for (int c = 1; c < offsets.length; c++)
+            offsets[c] = n == 1 ? 1 : c + 1;
+        var timing = TimingStatistics.of(new long[]{1000L * n}, 1, TimingStatistics.ALLOCATION_UNKNOWN);
+        return new TestResults.Result(timing, SolveResult.of(nodes, offsets), n, i);
+    }
+
+    private File segment() {
+        var segments = directory.toFile().listFiles((dir, name) -> name.endsWith(".log"));
+        assertEquals(1, segments.length);
+        return segments[0];
+    }
+}
@@ -0,0 +1,45 @@
+package ucm.erikkarl.tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Comprueba que {@link TestFileParser#stream(java.io.File)} lee los enteros de los extremos del rango
+ * de <code>int</code> y rechaza los que se salen de el en vez de darles la vuelta.
+ */
+class TestFileParserTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsTheLimitsOfTheIntRange() throws IOException {
+        var file = write("graph:\n2147483647\n-2147483648 0\n");
+        try (var graphs = TestFileParser.stream(file.toFile())) {
+            var graph = graphs.findFirst().orElseThrow();
+            assertEquals(3, graph.getNumberOfNodes());
+            assertEquals(2, graph.getNumberOfEdges());
+        }
+    }
+
+    @Test
+    void rejectsNumbersOutOfTheIntRange() throws IOException {
+        for (var number : new String[]{"2147483648", "-2147483649", "4294967297", "99999999999"}) {
+            var file = write("graph:\n1\n" + number + "\n");
+            try (var graphs = TestFileParser.stream(file.toFile())) {
+                assertThrows(NumberFormatException.class, () -> graphs.forEach(graph -> {
+                }), number);
+            }
+        }
+    }
+
+    private Path write(String text) throws IOException {
+        return Files.writeString(Files.createTempFile(directory, "test", ".txt"), text);
+    }
+}
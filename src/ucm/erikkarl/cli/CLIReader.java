@@ -73,6 +73,28 @@ final class CLIReader {
         return number;
     }
 
+    /**
+     * Lee un numero decimal por consola.
+     */
+    static double readDecimal() {
+        String line;
+        double number = 0;
+        boolean validInput = false;
+
+        while (!validInput) {
+            line = stdin.nextLine();
+            try {
+                number = Double.parseDouble(line);
+                validInput = true;
+
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid input: write a number.");
+            }
+        }
+
+        return number;
+    }
+
     /**
      * Lee una lista de nodos por consola. Todos deben ser enteros separados por espacios.
      */
@@ -24,6 +24,60 @@ enum Command {
             GraphCLI.runTest();
         }
     },
+    RUN_PARALLEL_TEST {
+        @Override
+        public String getHelp() {
+            return "Like \"run test\", but solves several graphs at the same time. The user has to specify " +
+                    "the name of the file and the number of threads. Solutions are saved in the same order, but " +
+                    "execution times may be less accurate, so use \"run test\" for gnuplot.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.runParallelTest();
+        }
+    },
+    SOLVE_TEST {
+        @Override
+        public String getHelp() {
+            return "Like \"run parallel test\", but solves each graph only once without measuring how long it " +
+                    "takes. Solutions are kept in a cache, so graphs that have already been solved, in this test " +
+                    "or in previous ones, are not solved again.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.solveTest();
+        }
+    },
+    SOLVE_LARGE_TEST {
+        @Override
+        public String getHelp() {
+            return "Like \"solve test\", but solves the graphs one by one and splits each graph among the given " +
+                    "number of threads instead of solving several graphs at the same time. The topological order is " +
+                    "calculated in parallel, and the strongly connected components too if there's a loop. Use it " +
+                    "for tests with a few very large graphs. It doesn't use the cache of solutions nor the saved " +
+                    "results.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.solveLargeTest();
+        }
+    },
+    SOLVE_OFF_HEAP {
+        @Override
+        public String getHelp() {
+            return "Like \"solve test\" with one thread, but each graph is copied outside of the Java heap before " +
+                    "solving it, so graphs of binary test files can be larger than the heap. It doesn't use the " +
+                    "cache of solutions nor the saved results.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.solveTestOffHeap();
+        }
+    },
     CREATE_TEST {
         public String getHelp() {
             return "Creates a random test file. The user has to specify the number of cases, " +
@@ -39,15 +93,107 @@ enum Command {
     BIG_TEST {
         @Override
         public String getHelp() {
-            return "Creates a random test file, but each graph has a different size. Starting with a " +
-                    "graph with 1 node, each graph has 100 more nodes than the last one until it almost " +
-                    "reaches 10000 nodes. This test file is made to be later run with gnuplot.\n";
+            return "Creates a random test file, but each graph has a different size. The user has to specify " +
+                    "the number of nodes of the first and last graphs (up to 10000000), whether each graph has a fixed " +
+                    "number of nodes more than the last one or grows by a factor, the average number of edges per " +
+                    "node and a seed. Graphs are written while they are generated, so they can have millions of " +
+                    "nodes. This test file is made to be later run with gnuplot.\n";
         }
 
         @Override
         public void execute() {
             GraphCLI.createBigTest();
         }
+    },
+    CONVERT_TEST {
+        @Override
+        public String getHelp() {
+            return "Converts a test file into a binary test file, which can be run with the \"run test\" command " +
+                    "like any other test file but is loaded much faster since it doesn't have to be parsed again.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.convertTest();
+        }
+    },
+    CLEAR_RESULTS {
+        @Override
+        public String getHelp() {
+            return "Removes the results saved by previous tests. Graphs that were already solved are not solved " +
+                    "again by \"solve test\", or by \"run test\" while \"reuse results\" is enabled.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.clearResults();
+        }
+    },
+    REUSE_RESULTS {
+        @Override
+        public String getHelp() {
+            return "Enables or disables reusing saved results in \"run test\" and \"run parallel test\". While " +
+                    "enabled, graphs whose times were measured by a previous test are not measured again and their " +
+                    "saved times are written instead. Results computed by an older version of the algorithm are " +
+                    "never reused.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.toggleReuseResults();
+        }
+    },
+    METRICS {
+        @Override
+        public String getHelp() {
+            return "Enables or disables metrics. While enabled, tests also save how many times each phase ran " +
+                    "(parsing, solving, measuring, writing...), how long it took and how much memory it allocated, " +
+                    "along with counters of nodes, edges and components, as JSON and Prometheus text files.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.toggleMetrics();
+        }
+    },
+    RECORD_EVENTS {
+        @Override
+        public String getHelp() {
+            return "Starts recording Java Flight Recorder events into a file given by the user, or stops recording " +
+                    "and saves them if they were already being recorded. Besides the default JVM events, it records " +
+                    "an event for each graph parsed, solved or transposed and for each result file written. The " +
+                    "file can be opened with JDK Mission Control or the jfr tool.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.recordEvents();
+        }
+    },
+    ADD_EDGES {
+        @Override
+        public String getHelp() {
+            return "Adds edges to the graph kept by this console. The user has to specify a node and the list " +
+                    "of its adjacent nodes. Nodes that don't exist yet are added too. Edges that would close a " +
+                    "loop are not added, so the graph always has a topological order.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.addEdges();
+        }
+    },
+    QUERY_ORDER {
+        @Override
+        public String getHelp() {
+            return "Shows the topological order of the graph kept by this console. It is updated every " +
+                    "time edges are added, so it doesn't have to be calculated again.";
+        }
+
+        @Override
+        public void execute() {
+            GraphCLI.queryOrder();
+        }
     };
 
     public abstract String getHelp();
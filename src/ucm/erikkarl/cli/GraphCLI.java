@@ -1,8 +1,17 @@
 package ucm.erikkarl.cli;
 
+import ucm.erikkarl.exercise4.DynamicTopologicalOrder;
+import ucm.erikkarl.jfr.EventRecorder;
 import ucm.erikkarl.tests.BigTestCreator;
+import ucm.erikkarl.tests.PipelineMetrics;
 import ucm.erikkarl.tests.RandomTestCreator;
+import ucm.erikkarl.tests.SizeSweep;
 import ucm.erikkarl.tests.TestManager;
+import ucm.erikkarl.tests.TestResults;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
 
 /**
  * Interfaz por consola que permite modificar un grafo y consultar el orden topologico de sus nodos
@@ -10,7 +19,10 @@ import ucm.erikkarl.tests.TestManager;
  * por ficheros de texto que siguen un formato concreto o incluso crear un fichero del estilo.
  */
 public final class GraphCLI {
-
+    /**
+     * Grafo que se modifica por consola junto con su orden topologico.
+     */
+    private static final DynamicTopologicalOrder graph = new DynamicTopologicalOrder();
 
     private GraphCLI() {
     }
@@ -78,15 +90,145 @@ public final class GraphCLI {
         long startTime = System.currentTimeMillis();
         var resultsOpt = TestManager.runTest(fileName);
         long finalTime = System.currentTimeMillis();
+        printTestResults(resultsOpt, finalTime - startTime);
+    }
 
+    /**
+     * Igual que {@link #runTest()}, pero pide tambien el numero de hilos con los que
+     * resolver los grafos del test a la vez.
+     */
+    static void runParallelTest() {
+        System.out.print("Name of file: ");
+        var fileName = CLIReader.readFileName();
+
+        System.out.printf("Number of threads (%d available): ", Runtime.getRuntime().availableProcessors());
+        int threads = CLIReader.readNumber();
+        System.out.println("Executing test...");
+
+        long startTime = System.currentTimeMillis();
+        var resultsOpt = TestManager.runTest(fileName, threads);
+        long finalTime = System.currentTimeMillis();
+        printTestResults(resultsOpt, finalTime - startTime);
+    }
+
+    /**
+     * Pide al usuario el nombre de un fichero de test y el numero de hilos, y resuelve cada
+     * grafo del test una sola vez sin medir tiempos. Los grafos que ya se han resuelto antes
+     * se toman de la cache de soluciones.
+     */
+    static void solveTest() {
+        System.out.print("Name of file: ");
+        var fileName = CLIReader.readFileName();
+
+        System.out.printf("Number of threads (%d available): ", Runtime.getRuntime().availableProcessors());
+        int threads = CLIReader.readNumber();
+        System.out.println("Solving test...");
+
+        var cache = TestManager.getSolveCache();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        long startTime = System.currentTimeMillis();
+        var resultsOpt = TestManager.runTest(fileName, threads, false);
+        long finalTime = System.currentTimeMillis();
+        printTestResults(resultsOpt, finalTime - startTime);
+        if (resultsOpt.isPresent()) {
+            System.out.printf("Solve cache: %d hits, %d misses, %d solutions stored%n",
+                    cache.getHits() - hits, cache.getMisses() - misses, cache.size());
+        }
+    }
+
+    /**
+     * Pide al usuario el nombre de un fichero de test y el numero de hilos, y resuelve cada grafo
+     * una sola vez repartiendolo entre esos hilos, sin medir tiempos.
+     */
+    static void solveLargeTest() {
+        System.out.print("Name of file: ");
+        var fileName = CLIReader.readFileName();
+
+        System.out.printf("Number of threads (%d available): ", Runtime.getRuntime().availableProcessors());
+        int threads = CLIReader.readNumber();
+        System.out.println("Solving test...");
+
+        long startTime = System.currentTimeMillis();
+        var resultsOpt = TestManager.runTestSplittingGraphs(fileName, threads);
+        long finalTime = System.currentTimeMillis();
+        printTestResults(resultsOpt, finalTime - startTime);
+    }
+
+    /**
+     * Pide al usuario el nombre de un fichero de test y resuelve cada grafo una sola vez fuera del
+     * heap, sin medir tiempos.
+     */
+    static void solveTestOffHeap() {
+        System.out.print("Name of file: ");
+        var fileName = CLIReader.readFileName();
+        System.out.println("Solving test off heap...");
+
+        long startTime = System.currentTimeMillis();
+        var resultsOpt = TestManager.runTestOffHeap(fileName);
+        long finalTime = System.currentTimeMillis();
+        printTestResults(resultsOpt, finalTime - startTime);
+    }
+
+    /**
+     * Activa o desactiva las metricas de cada fase de los tests.
+     */
+    static void toggleMetrics() {
+        PipelineMetrics.setEnabled(!PipelineMetrics.isEnabled());
+        System.out.println("Metrics " + (PipelineMetrics.isEnabled() ? "enabled." : "disabled."));
+    }
+
+    /**
+     * Empieza a grabar eventos de JFR en el fichero que indique el usuario o, si ya se estaban
+     * grabando, deja de grabarlos y los guarda.
+     */
+    static void recordEvents() {
+        if (EventRecorder.isRecording()) {
+            var file = EventRecorder.stop();
+            System.out.println("Events saved to " + file + '.');
+            return;
+        }
+
+        System.out.print("Name of file: ");
+        var fileName = CLIReader.readFileName();
+        try {
+            EventRecorder.start(new File(fileName));
+            System.out.println("Recording events. Use \"" + Command.RECORD_EVENTS + "\" again to stop.");
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Error: cannot record events to " + fileName);
+        }
+    }
+
+    /**
+     * Borra los resultados guardados por tests anteriores.
+     */
+    static void clearResults() {
+        if (TestManager.clearStoredResults())
+            System.out.println("Stored results removed.");
+    }
+
+    /**
+     * Activa o desactiva que los tests que miden tiempos aprovechen los resultados guardados.
+     */
+    static void toggleReuseResults() {
+        TestManager.setReuseStoredResults(!TestManager.isReusingStoredResults());
+        System.out.println("Reuse of stored results " + (TestManager.isReusingStoredResults() ? "enabled." : "disabled."));
+    }
+
+    /**
+     * Imprime por consola algunos datos sobre los resultados de un test.
+     */
+    private static void printTestResults(Optional<TestResults> resultsOpt, long actualElapsedTime) {
         if (resultsOpt.isPresent()) {
             var results = resultsOpt.get();
             System.out.println("Total number of cases: " + results.getNumberOfCases());
-            System.out.println("Medium elapsed time per graph: " + results.mediumElapsedTimePerCase() + " ms");
-            System.out.println("Total medium elapsed time: " + results.getTotalMediumElapsedTime() + " ms");
-            System.out.println("Actual elapsed time: " + (finalTime - startTime) + " ms");
+            System.out.println("Mean elapsed time per graph: " + results.meanElapsedTimePerCase() + " ms");
+            System.out.println("Total mean elapsed time: " + results.getTotalMeanElapsedTime() + " ms");
+            System.out.println("Actual elapsed time: " + actualElapsedTime + " ms");
             System.out.println("Solutions saved to " + results.getSolutionsFileName());
             System.out.println("Execution times saved to " + results.getExecutionTimeFileName());
+            if (results.getMetricsFileName() != null)
+                System.out.println("Metrics saved to " + results.getMetricsFileName());
         } else {
             var currentPath = System.getProperty("user.dir");
             System.err.println("File does not exist in " + currentPath);
@@ -96,8 +238,8 @@ public final class GraphCLI {
 
     /**
      * Pide al usuario el nombre de un fichero de test y crea un "big test": un test
-     * donde cada grafo tiene un numero distinto de nodos y en orden creciente hasta
-     * llegar a los miles de nodos por grafo.
+     * donde cada grafo tiene un numero distinto de nodos y en orden creciente. El
+     * usuario elige los tamanos de los grafos, su densidad y la semilla.
      */
     static void createBigTest() {
         long startTime;
@@ -106,15 +248,91 @@ public final class GraphCLI {
 
         System.out.print("Name of file: ");
         fileName = CLIReader.readFileName();
+
+        System.out.print("Nodes of the first graph: ");
+        int first = CLIReader.readNumber();
+        System.out.printf("Nodes of the last graph (up to %d): ", SizeSweep.MAX_NODES);
+        int last = CLIReader.readNumber();
+        System.out.print("Growth factor (1 for a fixed step): ");
+        double factor = CLIReader.readDecimal();
+        int step = 0;
+        if (factor == 1) {
+            System.out.print("Nodes added per step: ");
+            step = CLIReader.readNumber();
+        }
+        System.out.print("Average edges per node: ");
+        double edgesPerNode = CLIReader.readDecimal();
+        System.out.print("Seed: ");
+        long seed = CLIReader.readNumber();
+
+        SizeSweep sweep;
+        try {
+            sweep = factor == 1 ? SizeSweep.linear(first, last, step) : SizeSweep.geometric(first, last, factor);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return;
+        }
+        if (!(edgesPerNode >= 0) || Double.isInfinite(edgesPerNode)) {
+            System.err.println("Error: Average edges per node must be a non-negative number");
+            return;
+        }
         System.out.printf("Creating big test in %s...%n", fileName);
 
         startTime = System.currentTimeMillis();
-        BigTestCreator.create(fileName);
+        BigTestCreator.create(fileName, sweep, edgesPerNode, seed);
         finalTime = System.currentTimeMillis();
 
         System.out.printf("File finished writing! Time required: %d ms%n", (finalTime - startTime));
     }
 
+    /**
+     * Pide al usuario el nombre de un fichero de test y el de un fichero nuevo donde
+     * guardar el mismo test en formato binario.
+     */
+    static void convertTest() {
+        System.out.print("Name of file: ");
+        var fileName = CLIReader.readFileName();
+
+        System.out.print("Name of binary file: ");
+        var binaryFileName = CLIReader.readFileName();
+
+        long startTime = System.currentTimeMillis();
+        var converted = TestManager.convertToBinary(fileName, binaryFileName);
+        long finalTime = System.currentTimeMillis();
+
+        if (converted.isPresent()) {
+            System.out.printf("%d graphs converted to %s. Time required: %d ms%n",
+                    converted.get(), binaryFileName, (finalTime - startTime));
+        } else if (!new File(fileName).exists()) {
+            var currentPath = System.getProperty("user.dir");
+            System.err.println("File does not exist in " + currentPath);
+        }
+    }
+
+    /**
+     * Pide al usuario un nodo y la lista de sus nodos adyacentes y anade esas aristas al grafo
+     * de la consola. Avisa de las aristas que no se han anadido por cerrar un bucle.
+     */
+    static void addEdges() {
+        System.out.print("Node: ");
+        int node = CLIReader.readNumber();
+
+        System.out.print("Adjacent nodes: ");
+        var adjacents = CLIReader.readNodesList();
+
+        var rejected = graph.addEdges(node, adjacents);
+        for (Integer adj : rejected)
+            System.err.println("Edge " + node + " -> " + adj + " would close a loop, so it was not added.");
+        System.out.printf("Graph has %d nodes and %d edges.%n", graph.getNumberOfNodes(), graph.getNumberOfEdges());
+    }
+
+    /**
+     * Muestra el orden topologico del grafo de la consola.
+     */
+    static void queryOrder() {
+        System.out.println("Topological order: " + graph.getOrder());
+    }
+
     public static void printMessage(String msg) {
         System.out.println(msg);
     }
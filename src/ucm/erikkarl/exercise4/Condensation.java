@@ -0,0 +1,137 @@
+package ucm.erikkarl.exercise4;
+
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.CompactGraph;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Grafo de componentes (condensacion) de un grafo dirigido: cada componente fuertemente conexa
+ * se reduce a un solo nodo y hay una arista entre dos componentes si hay alguna arista entre sus
+ * nodos en el grafo original.
+ * <p>
+ * Las componentes se numeran de <code>0</code> a <code>getNumberOfComponents() - 1</code> siguiendo
+ * un orden topologico del grafo de componentes, asi que todas sus aristas van de una componente a
+ * otra con un numero mayor. Los nodos se identifican por su indice en el {@link CompactGraph}
+ * original.
+ */
+public final class Condensation {
+    private final CompactGraph graph;
+    private final int[] componentOf;
+    /**
+     * Nodos agrupados por componentes: los de la componente <code>c</code> van de
+     * <code>members[memberOffsets[c]]</code> a <code>members[memberOffsets[c + 1] - 1]</code>.
+     */
+    private final int[] memberOffsets;
+    private final int[] members;
+    private final CompactGraph dag;
+    private final boolean acyclic;
+
+    Condensation(CompactGraph graph, int[] componentOf, int[] memberOffsets, int[] members, CompactGraph dag,
+                 boolean acyclic) {
+        this.graph = graph;
+        this.componentOf = componentOf;
+        this.memberOffsets = memberOffsets;
+        this.members = members;
+        this.dag = dag;
+        this.acyclic = acyclic;
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    public int getNumberOfComponents() {
+        return memberOffsets.length - 1;
+    }
+
+    /**
+     * Indica si el grafo original no tiene bucles, es decir, si todas las componentes tienen un
+     * solo nodo y ningun nodo tiene una arista a si mismo. Esas aristas no impiden que el nodo forme
+     * una componente de un solo nodo, asi que se comprueban aparte al calcular las componentes.
+     */
+    public boolean isAcyclic() {
+        return acyclic;
+    }
+
+    /**
+     * Componente a la que pertenece el nodo con indice <code>node</code>.
+     */
+    public int componentOf(int node) {
+        return componentOf[node];
+    }
+
+    /**
+     * Posicion del primer nodo de la componente <code>component</code>.
+     */
+    public int membersStart(int component) {
+        return memberOffsets[component];
+    }
+
+    /**
+     * Posicion tras el ultimo nodo de la componente <code>component</code>.
+     */
+    public int membersEnd(int component) {
+        return memberOffsets[component + 1];
+    }
+
+    /**
+     * Indice del nodo en la posicion <code>position</code>. Los nodos de cada componente estan
+     * juntos y las componentes van en orden topologico, asi que si el grafo no tiene bucles
+     * recorrer todas las posiciones da el orden topologico de los nodos.
+     */
+    public int member(int position) {
+        return members[position];
+    }
+
+    /**
+     * Grafo de componentes sin aristas repetidas ni aristas de una componente a si misma. El nodo
+     * con indice <code>c</code> representa a la componente <code>c</code> y tiene ese mismo valor.
+     */
+    public CompactGraph getComponentGraph() {
+        return dag;
+    }
+
+    /**
+     * Devuelve un orden topologico del grafo de componentes. Como las componentes ya estan
+     * numeradas en ese orden, es <code>0, 1, ..., getNumberOfComponents() - 1</code>.
+     */
+    public int[] topologicalOrder() {
+        var order = new int[getNumberOfComponents()];
+        for (int c = 0; c < order.length; c++)
+            order[c] = c;
+        return order;
+    }
+
+    /**
+     * Devuelve los valores de los nodos agrupados por componentes en un {@link SolveResult}.
+     */
+    public SolveResult toSolveResult() {
+        var nodes = new int[members.length];
+        for (int i = 0; i < members.length; i++)
+            nodes[i] = graph.label(members[i]);
+        return new SolveResult(nodes, memberOffsets);
+    }
+
+    /**
+     * Devuelve las componentes con el formato de {@link Exercise4#solve(CompactGraph)}: las de un
+     * solo nodo como {@link Either.Left} y el resto como {@link Either.Right}, en orden topologico.
+     */
+    public LinkedList<Either<Integer, List<Integer>>> toList() {
+        var result = new LinkedList<Either<Integer, List<Integer>>>();
+        for (int c = 0; c < getNumberOfComponents(); c++) {
+            int start = memberOffsets[c];
+            int end = memberOffsets[c + 1];
+            if (end - start > 1) {
+                var component = new LinkedList<Integer>();
+                for (int i = start; i < end; i++)
+                    component.add(graph.label(members[i]));
+                result.add(new Either.Right<>(component));
+            } else {
+                result.add(new Either.Left<>(graph.label(members[start])));
+            }
+        }
+        return result;
+    }
+}
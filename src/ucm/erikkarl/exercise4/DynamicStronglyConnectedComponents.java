@@ -0,0 +1,432 @@
+package ucm.erikkarl.exercise4;
+
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.CompactGraph;
+import ucm.erikkarl.graph.Graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grafo dirigido que mantiene sus componentes fuertemente conexas y un orden topologico de ellas
+ * mientras se le anaden aristas, sin tener que recorrer todo el grafo con
+ * {@link KosarajusAlgorithm} despues de cada cambio.
+ * <p>
+ * Las componentes se guardan con una estructura de conjuntos disjuntos (union-find): cada
+ * componente tiene un nodo representante, que es el que guarda las aristas de la componente y su
+ * posicion en el orden. Al anadir una arista <code>x -> y</code> con la componente de <code>y</code>
+ * antes que la de <code>x</code> se hace como en {@link DynamicTopologicalOrder}: se buscan las
+ * componentes alcanzables desde la de <code>y</code> y las que llegan a la de <code>x</code> entre
+ * ambas posiciones. Si alguna esta en los dos grupos la arista cierra un bucle y todas esas se unen
+ * en una sola componente; el resto se reordena.
+ * <p>
+ * Solo se recorre el grafo entero al crearlo a partir de un {@link Graph}.
+ */
+public final class DynamicStronglyConnectedComponents {
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Valor de <code>componentAt</code> para las posiciones que han quedado libres al unir componentes.
+     */
+    private static final int EMPTY = -1;
+
+    private final Map<Integer, Integer> indices = new HashMap<>();
+    private int[] labels = new int[INITIAL_CAPACITY];
+    private int nodes = 0;
+    private int edges = 0;
+    private int components = 0;
+    /**
+     * Destinos de las aristas anadidas desde cada nodo, sin repetir, para contar una sola vez las
+     * aristas repetidas como hace {@link Graph}.
+     */
+    private int[][] targets = new int[INITIAL_CAPACITY][];
+    private int[] targetsSize = new int[INITIAL_CAPACITY];
+    // Conjuntos disjuntos: padre de cada nodo y tamano de cada componente (en su representante)
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] size = new int[INITIAL_CAPACITY];
+    /**
+     * Siguiente nodo de la misma componente, formando una lista circular.
+     */
+    private int[] nextMember = new int[INITIAL_CAPACITY];
+    // Aristas de salida y de entrada de cada componente, guardadas en su representante
+    private int[][] adjacents = new int[INITIAL_CAPACITY][];
+    private int[] adjacentsSize = new int[INITIAL_CAPACITY];
+    private int[][] predecessors = new int[INITIAL_CAPACITY][];
+    private int[] predecessorsSize = new int[INITIAL_CAPACITY];
+    /**
+     * Posicion de cada componente (en su representante) en el orden topologico.
+     */
+    private int[] position = new int[INITIAL_CAPACITY];
+    /**
+     * Representante de la componente en cada posicion del orden, o {@link #EMPTY}.
+     */
+    private int[] componentAt = new int[INITIAL_CAPACITY];
+    private int positions = 0;
+    // Espacio de trabajo para las busquedas al anadir aristas
+    private boolean[] forwardMark = new boolean[INITIAL_CAPACITY];
+    private boolean[] backwardMark = new boolean[INITIAL_CAPACITY];
+    private int[] stack = new int[INITIAL_CAPACITY];
+
+    public DynamicStronglyConnectedComponents() {
+    }
+
+    /**
+     * Crea la estructura con los nodos y aristas de <code>graph</code>, calculando sus componentes
+     * con un solo recorrido.
+     */
+    public DynamicStronglyConnectedComponents(Graph<Integer> graph) {
+        var condensation = TarjansAlgorithm.condense(CompactGraph.from(graph));
+        var compact = condensation.getGraph();
+
+        for (int i = 0; i < compact.getNumberOfNodes(); i++)
+            indexOf(compact.label(condensation.member(i)));
+        // Los nodos se han anadido en orden topologico de componentes, cada uno con su posicion,
+        // asi que solo hay que unir los nodos de cada componente y colocar su representante
+        positions = 0;
+        for (int c = 0; c < condensation.getNumberOfComponents(); c++) {
+            int representative = indices.get(compact.label(condensation.member(condensation.membersStart(c))));
+            for (int i = condensation.membersStart(c) + 1; i < condensation.membersEnd(c); i++)
+                representative = link(representative, indices.get(compact.label(condensation.member(i))));
+            position[representative] = positions;
+            componentAt[positions++] = representative;
+        }
+        for (int node = 0; node < compact.getNumberOfNodes(); node++) {
+            int from = indices.get(compact.label(node));
+            for (int e = compact.edgesStart(node); e < compact.edgesEnd(node); e++) {
+                int to = indices.get(compact.label(compact.edgeTarget(e)));
+                insertEdge(from, to);
+            }
+        }
+    }
+
+    public int getNumberOfNodes() {
+        return nodes;
+    }
+
+    /**
+     * Numero de aristas distintas, incluidas las de un nodo a si mismo y las que hay dentro de una
+     * misma componente, igual que {@link Graph#getNumberOfEdges()}.
+     */
+    public int getNumberOfEdges() {
+        return edges;
+    }
+
+    public int getNumberOfComponents() {
+        return components;
+    }
+
+    /**
+     * Anade un nodo sin aristas, que forma una componente el solo, si no existia ya.
+     */
+    public void addNode(int node) {
+        indexOf(node);
+    }
+
+    /**
+     * Indica si <code>a</code> y <code>b</code> estan en la misma componente fuertemente conexa.
+     */
+    public boolean sameComponent(int a, int b) {
+        var indexA = indices.get(a);
+        var indexB = indices.get(b);
+        return indexA != null && indexB != null && find(indexA) == find(indexB);
+    }
+
+    /**
+     * Anade la arista <code>from -> to</code>, y los nodos si no existian. Si cierra un bucle une
+     * todas las componentes del bucle en una.
+     *
+     * @return <code>true</code> si se han unido componentes.
+     */
+    public boolean addEdge(int from, int to) {
+        int x = indexOf(from);
+        int y = indexOf(to);
+        // Una arista repetida ya se respeta en el orden y no puede cerrar ningun bucle nuevo
+        for (int i = 0; i < targetsSize[x]; i++) {
+            if (targets[x][i] == y)
+                return false;
+        }
+        int sourceComponent = find(x);
+        int targetComponent = find(y);
+        boolean merged = false;
+
+        int lowerBound = position[targetComponent];
+        int upperBound = position[sourceComponent];
+        if (sourceComponent != targetComponent && lowerBound < upperBound) {
+            var forward = search(targetComponent, adjacents, adjacentsSize, forwardMark, upperBound, true);
+            var backward = search(sourceComponent, predecessors, predecessorsSize, backwardMark, lowerBound, false);
+            merged = forwardMark[sourceComponent];
+            reorder(backward, forward);
+        }
+        insertEdge(x, y);
+        return merged;
+    }
+
+    /**
+     * Anade las aristas desde <code>node</code> hasta cada nodo de <code>adjacentNodes</code>,
+     * igual que {@link Graph#addEdges(Object, List)}.
+     */
+    public void addEdges(int node, List<Integer> adjacentNodes) {
+        addNode(node);
+        for (Integer adj : adjacentNodes)
+            addEdge(node, adj);
+    }
+
+    /**
+     * Devuelve las componentes en orden topologico con el mismo formato que
+     * {@link Exercise4#solve(Graph)}.
+     */
+    public LinkedList<Either<Integer, List<Integer>>> getComponents() {
+        var result = new LinkedList<Either<Integer, List<Integer>>>();
+        for (int p = 0; p < positions; p++) {
+            int representative = componentAt[p];
+            if (representative == EMPTY)
+                continue;
+            if (size[representative] > 1) {
+                var component = new LinkedList<Integer>();
+                int member = representative;
+                do {
+                    component.add(labels[member]);
+                    member = nextMember[member];
+                } while (member != representative);
+                result.add(new Either.Right<>(component));
+            } else {
+                result.add(new Either.Left<>(labels[representative]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Busca en profundidad las componentes alcanzables desde <code>start</code> siguiendo las aristas
+     * de <code>edges</code>, sin pasar de la posicion <code>bound</code> (hacia delante, si
+     * <code>forward</code>, o hacia atras si no). Las componentes encontradas quedan marcadas en
+     * <code>marks</code>.
+     *
+     * @return Posiciones de las componentes encontradas, ordenadas.
+     */
+    private int[] search(int start, int[][] edges, int[] edgesSize, boolean[] marks, int bound, boolean forward) {
+        var found = new int[INITIAL_CAPACITY];
+        int count = 0;
+        int depth = 0;
+
+        marks[start] = true;
+        stack[depth++] = start;
+        while (depth > 0) {
+            int component = stack[--depth];
+            if (count == found.length)
+                found = Arrays.copyOf(found, count * 2);
+            found[count++] = position[component];
+
+            // Solo se expanden las componentes estrictamente entre los limites
+            if (position[component] == bound)
+                continue;
+            for (int i = 0; i < edgesSize[component]; i++) {
+                int adj = find(edges[component][i]);
+                int adjPosition = position[adj];
+                if (!marks[adj] && (forward ? adjPosition <= bound : adjPosition >= bound)) {
+                    marks[adj] = true;
+                    stack[depth++] = adj;
+                }
+            }
+        }
+
+        var positionsFound = Arrays.copyOf(found, count);
+        Arrays.sort(positionsFound);
+        return positionsFound;
+    }
+
+    /**
+     * Reordena las componentes encontradas al anadir una arista: primero las que llegan al origen
+     * (<code>backward</code>), despues las que estan en ambos grupos unidas en una sola componente y
+     * por ultimo las alcanzables desde el destino (<code>forward</code>), cada grupo con su orden
+     * relativo.
+     * <p>
+     * Reutiliza las posiciones que ocupaban: las primeras para las de <code>backward</code>, asi que
+     * solo se mueven hacia atras, y las ultimas para las de <code>forward</code>, que solo se mueven
+     * hacia delante. Las que sobran al unir componentes quedan libres.
+     */
+    private void reorder(int[] backward, int[] forward) {
+        var before = new int[backward.length];
+        var after = new int[forward.length];
+        int beforeCount = 0;
+        int afterCount = 0;
+        int merged = EMPTY;
+
+        for (int p : backward) {
+            int component = componentAt[p];
+            if (!forwardMark[component])
+                before[beforeCount++] = component;
+            else if (merged == EMPTY)
+                merged = component;
+            else
+                merged = link(merged, component);
+        }
+        for (int p : forward) {
+            int component = componentAt[p];
+            if (!backwardMark[component])
+                after[afterCount++] = component;
+        }
+
+        // Posiciones ocupadas por ambos grupos, sin repetir, y limpieza de las marcas
+        var used = new int[backward.length + forward.length];
+        int usedCount = 0;
+        int i = 0;
+        int j = 0;
+        while (i < backward.length || j < forward.length) {
+            int p;
+            if (j == forward.length || (i < backward.length && backward[i] < forward[j]))
+                p = backward[i++];
+            else if (i == backward.length || forward[j] < backward[i])
+                p = forward[j++];
+            else {
+                p = backward[i++];
+                j++;
+            }
+            forwardMark[componentAt[p]] = backwardMark[componentAt[p]] = false;
+            componentAt[p] = EMPTY;
+            used[usedCount++] = p;
+        }
+
+        for (int k = 0; k < beforeCount; k++)
+            place(before[k], used[k]);
+        if (merged != EMPTY) {
+            place(merged, used[beforeCount]);
+            removeInternalEdges(merged);
+        }
+        for (int k = 0; k < afterCount; k++)
+            place(after[k], used[usedCount - afterCount + k]);
+    }
+
+    private void place(int component, int p) {
+        position[component] = p;
+        componentAt[p] = component;
+    }
+
+    /**
+     * Une las componentes con representantes <code>a</code> y <code>b</code>.
+     *
+     * @return Representante de la componente resultante.
+     */
+    private int link(int a, int b) {
+        if (size[a] < size[b]) {
+            int tmp = a;
+            a = b;
+            b = tmp;
+        }
+        parent[b] = a;
+        size[a] += size[b];
+        components--;
+
+        int tmp = nextMember[a];
+        nextMember[a] = nextMember[b];
+        nextMember[b] = tmp;
+
+        adjacents[a] = append(adjacents[a], adjacentsSize[a], adjacents[b], adjacentsSize[b]);
+        adjacentsSize[a] += adjacentsSize[b];
+        predecessors[a] = append(predecessors[a], predecessorsSize[a], predecessors[b], predecessorsSize[b]);
+        predecessorsSize[a] += predecessorsSize[b];
+        adjacents[b] = predecessors[b] = null;
+        adjacentsSize[b] = predecessorsSize[b] = 0;
+        return a;
+    }
+
+    /**
+     * Quita de la componente <code>component</code> las aristas entre sus propios nodos.
+     */
+    private void removeInternalEdges(int component) {
+        adjacentsSize[component] = removeInternal(component, adjacents[component], adjacentsSize[component]);
+        predecessorsSize[component] = removeInternal(component, predecessors[component], predecessorsSize[component]);
+    }
+
+    private int removeInternal(int component, int[] list, int length) {
+        int kept = 0;
+        for (int i = 0; i < length; i++) {
+            if (find(list[i]) != component)
+                list[kept++] = list[i];
+        }
+        return kept;
+    }
+
+    private static int[] append(int[] list, int length, int[] other, int otherLength) {
+        if (length + otherLength > list.length)
+            list = Arrays.copyOf(list, Math.max(length + otherLength, list.length * 2));
+        System.arraycopy(other, 0, list, length, otherLength);
+        return list;
+    }
+
+    private static int[] append(int[] list, int length, int value) {
+        if (length == list.length)
+            list = Arrays.copyOf(list, Math.max(2, list.length * 2));
+        list[length] = value;
+        return list;
+    }
+
+    /**
+     * Anade la arista <code>from -> to</code> a las listas de sus componentes, salvo que ambos
+     * nodos esten en la misma.
+     */
+    private void insertEdge(int from, int to) {
+        targets[from] = append(targets[from], targetsSize[from]++, to);
+        edges++;
+        int source = find(from);
+        int target = find(to);
+        if (source == target)
+            return;
+        adjacents[source] = append(adjacents[source], adjacentsSize[source]++, to);
+        predecessors[target] = append(predecessors[target], predecessorsSize[target]++, from);
+    }
+
+    /**
+     * Devuelve el representante de la componente de <code>node</code>, acortando el camino hasta el.
+     */
+    private int find(int node) {
+        int root = node;
+        while (parent[root] != root)
+            root = parent[root];
+        while (parent[node] != root) {
+            int next = parent[node];
+            parent[node] = root;
+            node = next;
+        }
+        return root;
+    }
+
+    private int indexOf(int node) {
+        var index = indices.get(node);
+        if (index != null)
+            return index;
+
+        if (nodes == labels.length) {
+            int capacity = nodes * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            size = Arrays.copyOf(size, capacity);
+            nextMember = Arrays.copyOf(nextMember, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            targetsSize = Arrays.copyOf(targetsSize, capacity);
+            adjacents = Arrays.copyOf(adjacents, capacity);
+            adjacentsSize = Arrays.copyOf(adjacentsSize, capacity);
+            predecessors = Arrays.copyOf(predecessors, capacity);
+            predecessorsSize = Arrays.copyOf(predecessorsSize, capacity);
+            position = Arrays.copyOf(position, capacity);
+            componentAt = Arrays.copyOf(componentAt, capacity);
+            forwardMark = Arrays.copyOf(forwardMark, capacity);
+            backwardMark = Arrays.copyOf(backwardMark, capacity);
+            stack = Arrays.copyOf(stack, capacity);
+        }
+        labels[nodes] = node;
+        parent[nodes] = nodes;
+        size[nodes] = 1;
+        nextMember[nodes] = nodes;
+        targets[nodes] = new int[2];
+        adjacents[nodes] = new int[2];
+        predecessors[nodes] = new int[2];
+        position[nodes] = positions;
+        componentAt[positions++] = nodes;
+        components++;
+        indices.put(node, nodes);
+        return nodes++;
+    }
+}
@@ -0,0 +1,250 @@
+package ucm.erikkarl.exercise4;
+
+import ucm.erikkarl.graph.CompactGraph;
+import ucm.erikkarl.graph.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grafo dirigido sin bucles que mantiene un orden topologico de sus nodos mientras se le anaden
+ * aristas, sin tener que recalcularlo desde cero con {@link Exercise4#solve(Graph)}.
+ * <p>
+ * Usa el algoritmo de Pearce y Kelly: al anadir una arista <code>x -> y</code> con <code>y</code>
+ * antes que <code>x</code> en el orden, solo se reordenan los nodos cuya posicion esta entre las de
+ * <code>y</code> y <code>x</code> y que son alcanzables desde <code>y</code> o llegan a
+ * <code>x</code>. Si <code>x</code> es alcanzable desde <code>y</code> la arista cerraria un bucle,
+ * asi que no se anade.
+ */
+public final class DynamicTopologicalOrder {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<Integer, Integer> indices = new HashMap<>();
+    private int[] labels = new int[INITIAL_CAPACITY];
+    private int nodes = 0;
+    private int edges = 0;
+    // Aristas de salida y de entrada de cada nodo
+    private int[][] adjacents = new int[INITIAL_CAPACITY][];
+    private int[] adjacentsSize = new int[INITIAL_CAPACITY];
+    private int[][] predecessors = new int[INITIAL_CAPACITY][];
+    private int[] predecessorsSize = new int[INITIAL_CAPACITY];
+    /**
+     * Posicion de cada nodo en el orden topologico.
+     */
+    private int[] position = new int[INITIAL_CAPACITY];
+    /**
+     * Nodo que hay en cada posicion del orden topologico.
+     */
+    private int[] nodeAt = new int[INITIAL_CAPACITY];
+    // Espacio de trabajo para las busquedas al anadir aristas
+    private boolean[] visited = new boolean[INITIAL_CAPACITY];
+    private int[] stack = new int[INITIAL_CAPACITY];
+
+    public DynamicTopologicalOrder() {
+    }
+
+    /**
+     * Crea un orden dinamico con los nodos y aristas de <code>graph</code>.
+     *
+     * @throws IllegalArgumentException Si <code>graph</code> tiene algun bucle, incluidas las aristas
+     *                                  de un nodo a si mismo, que {@link #addEdge(int, int)} tampoco
+     *                                  anade.
+     */
+    public DynamicTopologicalOrder(Graph<Integer> graph) {
+        var condensation = TarjansAlgorithm.condense(CompactGraph.from(graph));
+        if (!condensation.isAcyclic())
+            throw new IllegalArgumentException("There's a loop, so there's no topological order");
+
+        var compact = condensation.getGraph();
+        for (int i = 0; i < compact.getNumberOfNodes(); i++)
+            addNode(compact.label(condensation.member(i)));
+        for (int node = 0; node < compact.getNumberOfNodes(); node++) {
+            int from = indices.get(compact.label(node));
+            for (int e = compact.edgesStart(node); e < compact.edgesEnd(node); e++)
+                insertEdge(from, indices.get(compact.label(compact.edgeTarget(e))));
+        }
+    }
+
+    public int getNumberOfNodes() {
+        return nodes;
+    }
+
+    public int getNumberOfEdges() {
+        return edges;
+    }
+
+    /**
+     * Anade un nodo sin aristas al final del orden topologico, si no existia ya.
+     */
+    public void addNode(int node) {
+        indexOf(node);
+    }
+
+    /**
+     * Anade la arista <code>from -> to</code>, y los nodos si no existian, reordenando solo los
+     * nodos afectados. Si la arista cerraria un bucle no se anade.
+     *
+     * @return <code>false</code> si la arista no se ha anadido porque cerraria un bucle.
+     */
+    public boolean addEdge(int from, int to) {
+        int x = indexOf(from);
+        int y = indexOf(to);
+        if (x == y)
+            return false;
+        for (int i = 0; i < adjacentsSize[x]; i++) {
+            if (adjacents[x][i] == y)
+                return true;
+        }
+
+        int lowerBound = position[y];
+        int upperBound = position[x];
+        if (lowerBound < upperBound) {
+            var forward = reachable(y, adjacents, adjacentsSize, upperBound, true);
+            if (forward == null)
+                return false;
+            var backward = reachable(x, predecessors, predecessorsSize, lowerBound, false);
+            reorder(backward, forward);
+        }
+        insertEdge(x, y);
+        return true;
+    }
+
+    /**
+     * Anade las aristas desde <code>node</code> hasta cada nodo de <code>adjacentNodes</code>,
+     * igual que {@link Graph#addEdges(Object, List)}.
+     *
+     * @return Nodos de <code>adjacentNodes</code> cuya arista no se ha anadido porque cerraria un bucle.
+     */
+    public List<Integer> addEdges(int node, List<Integer> adjacentNodes) {
+        var rejected = new ArrayList<Integer>();
+        addNode(node);
+        for (Integer adj : adjacentNodes) {
+            if (!addEdge(node, adj))
+                rejected.add(adj);
+        }
+        return rejected;
+    }
+
+    /**
+     * Devuelve los nodos en orden topologico.
+     */
+    public List<Integer> getOrder() {
+        var order = new ArrayList<Integer>(nodes);
+        for (int i = 0; i < nodes; i++)
+            order.add(labels[nodeAt[i]]);
+        return order;
+    }
+
+    /**
+     * Busca en profundidad los nodos alcanzables desde <code>start</code> siguiendo las aristas de
+     * <code>edges</code> cuya posicion esta por debajo (si <code>forward</code>) o por encima (si no)
+     * de <code>bound</code>.
+     *
+     * @return Posiciones de los nodos encontrados, ordenadas, o <code>null</code> si hacia delante
+     * se llega al nodo en la posicion <code>bound</code>, es decir, si hay un bucle.
+     */
+    private int[] reachable(int start, int[][] edges, int[] edgesSize, int bound, boolean forward) {
+        var found = new int[INITIAL_CAPACITY];
+        int count = 0;
+        int size = 0;
+        boolean loop = false;
+
+        visited[start] = true;
+        stack[size++] = start;
+        while (size > 0 && !loop) {
+            int node = stack[--size];
+            if (count == found.length)
+                found = Arrays.copyOf(found, count * 2);
+            found[count++] = position[node];
+
+            for (int i = 0; i < edgesSize[node] && !loop; i++) {
+                int adj = edges[node][i];
+                int adjPosition = position[adj];
+                if (forward && adjPosition == bound) {
+                    loop = true;
+                } else if (!visited[adj] && (forward ? adjPosition < bound : adjPosition > bound)) {
+                    visited[adj] = true;
+                    stack[size++] = adj;
+                }
+            }
+        }
+
+        // Los nodos pendientes en la pila tambien estan marcados
+        while (size > 0) {
+            int node = stack[--size];
+            if (count == found.length)
+                found = Arrays.copyOf(found, count * 2);
+            found[count++] = position[node];
+        }
+        for (int i = 0; i < count; i++)
+            visited[nodeAt[found[i]]] = false;
+
+        if (loop)
+            return null;
+        var positions = Arrays.copyOf(found, count);
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /**
+     * Coloca los nodos en las posiciones <code>backward</code> (los que llegan al origen de la
+     * arista nueva) antes que los de <code>forward</code> (los alcanzables desde su destino),
+     * reutilizando esas mismas posiciones y sin cambiar el orden relativo de cada grupo.
+     */
+    private void reorder(int[] backward, int[] forward) {
+        var moved = new int[backward.length + forward.length];
+        for (int i = 0; i < backward.length; i++)
+            moved[i] = nodeAt[backward[i]];
+        for (int i = 0; i < forward.length; i++)
+            moved[backward.length + i] = nodeAt[forward[i]];
+
+        var positions = new int[moved.length];
+        System.arraycopy(backward, 0, positions, 0, backward.length);
+        System.arraycopy(forward, 0, positions, backward.length, forward.length);
+        Arrays.sort(positions);
+
+        for (int i = 0; i < moved.length; i++) {
+            position[moved[i]] = positions[i];
+            nodeAt[positions[i]] = moved[i];
+        }
+    }
+
+    private void insertEdge(int from, int to) {
+        if (adjacentsSize[from] == adjacents[from].length)
+            adjacents[from] = Arrays.copyOf(adjacents[from], adjacentsSize[from] * 2);
+        adjacents[from][adjacentsSize[from]++] = to;
+        if (predecessorsSize[to] == predecessors[to].length)
+            predecessors[to] = Arrays.copyOf(predecessors[to], predecessorsSize[to] * 2);
+        predecessors[to][predecessorsSize[to]++] = from;
+        edges++;
+    }
+
+    private int indexOf(int node) {
+        var index = indices.get(node);
+        if (index != null)
+            return index;
+
+        if (nodes == labels.length) {
+            int capacity = nodes * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            adjacents = Arrays.copyOf(adjacents, capacity);
+            adjacentsSize = Arrays.copyOf(adjacentsSize, capacity);
+            predecessors = Arrays.copyOf(predecessors, capacity);
+            predecessorsSize = Arrays.copyOf(predecessorsSize, capacity);
+            position = Arrays.copyOf(position, capacity);
+            nodeAt = Arrays.copyOf(nodeAt, capacity);
+            visited = Arrays.copyOf(visited, capacity);
+            stack = Arrays.copyOf(stack, capacity);
+        }
+        labels[nodes] = node;
+        adjacents[nodes] = new int[2];
+        predecessors[nodes] = new int[2];
+        position[nodes] = nodes;
+        nodeAt[nodes] = nodes;
+        indices.put(node, nodes);
+        return nodes++;
+    }
+}
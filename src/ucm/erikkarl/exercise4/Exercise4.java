@@ -2,9 +2,13 @@ package ucm.erikkarl.exercise4;
 
 
 import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.CompactGraph;
 import ucm.erikkarl.graph.Graph;
+import ucm.erikkarl.graph.IndexedGraph;
+import ucm.erikkarl.jfr.SolveEvent;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * <b>Enunciado:</b> <p>
@@ -15,12 +19,25 @@ import java.util.*;
  * listar sus componentes fuertemente conexas como conjuntos de vertices.
  * <p>
  * <b>Funcionamiento:</b><p>
- * Empieza calculando el orden topologico de los nodos de un grafo. Si no
- * encuentra ningun bucle devuelve una lista que lo represente. En caso
- * contrario calcula sus componentes conexas mediante el algoritmo de
- * Kosaraju.
+ * Calcula las componentes fuertemente conexas del grafo con el algoritmo
+ * de Tarjan en un solo recorrido. Como las componentes salen en orden
+ * topologico, si no hay ningun bucle la lista resultante es directamente
+ * el orden topologico de los nodos. Asi no hace falta un primer intento de
+ * ordenacion topologica que se descarta al encontrar un bucle.
  */
 public final class Exercise4 {
+    /**
+     * Version de los algoritmos. Hay que aumentarla cada vez que cambia la solucion que dan para algun
+     * grafo, para que no se aprovechen los resultados guardados con una version anterior.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Nombres de los algoritmos en los eventos de JFR.
+     */
+    private static final String TARJAN = "Tarjan";
+    private static final String PARALLEL_TOPOLOGICAL_ORDERING = "Parallel topological ordering";
+    private static final String FORWARD_BACKWARD = "Forward-backward";
+    private static final String KOSARAJU = "Kosaraju";
 
     private Exercise4() {
     }
@@ -34,10 +51,111 @@ public final class Exercise4 {
      * @return
      */
     public static List<Either<Integer, List<Integer>>> solve(Graph<Integer> graph) {
-        try {
-            return TopologicalOrdering.solve(graph);
-        } catch (IllegalArgumentException var4) {
-            return KosarajusAlgorithm.solve(graph);
+        var event = new SolveEvent();
+        event.begin();
+        var compact = CompactGraph.from(graph);
+        var result = TarjansAlgorithm.solve(compact);
+        commit(event, compact, TARJAN, result.size());
+        return result;
+    }
+
+    /**
+     * Igual que {@link #solve(Graph)} pero sobre un grafo compacto, sin mapas ni enteros
+     * envueltos durante el recorrido.
+     *
+     * @param graph Grafo sobre el cual se aplica el algoritmo.
+     * @return El orden topologico de los nodos o, si hay bucles, las componentes fuertemente conexas
+     * en orden topologico.
+     */
+    public static List<Either<Integer, List<Integer>>> solve(CompactGraph graph) {
+        var event = new SolveEvent();
+        event.begin();
+        var result = TarjansAlgorithm.solve(graph);
+        commit(event, graph, TARJAN, result.size());
+        return result;
+    }
+
+    /**
+     * Igual que {@link #solve(CompactGraph)} pero devuelve el resultado en un {@link SolveResult},
+     * con solo dos arrays de enteros en vez de un objeto por cada nodo y una lista por cada
+     * componente.
+     *
+     * @param graph Grafo sobre el cual se aplica el algoritmo.
+     * @return Las componentes fuertemente conexas en orden topologico, que son los nodos en orden
+     * topologico si no hay bucles.
+     */
+    public static SolveResult solveCompact(CompactGraph graph) {
+        var event = new SolveEvent();
+        event.begin();
+        var result = TarjansAlgorithm.solveCompact(graph);
+        commit(event, graph, TARJAN, result.getNumberOfComponents());
+        return result;
+    }
+
+    /**
+     * Igual que {@link #solveCompact(CompactGraph)} pero sobre cualquier {@link IndexedGraph}, como un
+     * {@link ucm.erikkarl.graph.OffHeapGraph} mas grande que el heap. Usa el algoritmo de Kosaraju, cuyos
+     * arrays auxiliares se crean con {@link IndexedGraph#newIntArray(int)}, asi que estan fuera del heap
+     * si el grafo lo esta y el trabajo del recolector de basura no crece con el tamano del grafo.
+     *
+     * @param graph Grafo sobre el cual se aplica el algoritmo.
+     * @return Las componentes fuertemente conexas en orden topologico, igual que
+     * {@link #solveCompact(CompactGraph)} salvo el orden de las que no dependen entre si.
+     */
+    public static SolveResult solveIndexed(IndexedGraph graph) {
+        var event = new SolveEvent();
+        event.begin();
+        var result = KosarajusAlgorithm.solveCompact(graph);
+        commit(event, graph, KOSARAJU, result.getNumberOfComponents());
+        return result;
+    }
+
+    /**
+     * Calcula el grafo de componentes fuertemente conexas de <code>graph</code>, con la componente
+     * de cada nodo, los nodos de cada componente, las aristas entre componentes y un orden
+     * topologico de estas, todo en un solo recorrido.
+     *
+     * @param graph Grafo sobre el cual se aplica el algoritmo.
+     * @return El grafo de componentes de <code>graph</code>.
+     */
+    public static Condensation condense(CompactGraph graph) {
+        return TarjansAlgorithm.condense(graph);
+    }
+
+    /**
+     * Igual que {@link #solve(CompactGraph)} pero pensado para grafos grandes. Calcula el orden
+     * topologico en paralelo con los hilos de <code>pool</code> y solo si encuentra algun bucle
+     * calcula las componentes fuertemente conexas, tambien en paralelo.
+     *
+     * @param graph Grafo sobre el cual se aplica el algoritmo.
+     * @param pool  Pool de hilos donde se calcula el orden topologico.
+     * @return Lo mismo que {@link #solve(CompactGraph)}, aunque las componentes que no dependen entre
+     * si pueden salir en otro orden.
+     */
+    public static List<Either<Integer, List<Integer>>> solveInParallel(CompactGraph graph, ForkJoinPool pool) {
+        var event = new SolveEvent();
+        event.begin();
+        var order = ParallelTopologicalOrdering.solve(graph, pool);
+        if (order.isPresent()) {
+            commit(event, graph, PARALLEL_TOPOLOGICAL_ORDERING, order.get().size());
+            return order.get();
+        }
+        var components = ForwardBackwardAlgorithm.solve(graph, pool);
+        commit(event, graph, FORWARD_BACKWARD, components.size());
+        return components;
+    }
+
+    /**
+     * Guarda <code>event</code> si se estan grabando eventos de JFR. Solo rellena sus campos en
+     * ese caso.
+     */
+    private static void commit(SolveEvent event, IndexedGraph graph, String algorithm, int components) {
+        if (event.shouldCommit()) {
+            event.algorithm = algorithm;
+            event.nodes = graph.getNumberOfNodes();
+            event.edges = graph.getNumberOfEdges();
+            event.components = components;
+            event.commit();
         }
     }
 
@@ -55,14 +173,33 @@ public final class Exercise4 {
     }
 
     /**
-     * Devuelve el primer nodo que queda sin visitar siguiendo el orden definido por
-     * el mapa <code>colors</code>.
+     * Devuelve un iterador sobre los nodos sin visitar siguiendo el orden definido por el mapa
+     * <code>colors</code>. Sirve para elegir la raiz de cada busqueda en profundidad.
+     * <p>
+     * Como un nodo nunca vuelve a estar sin visitar, el iterador avanza siempre hacia delante y
+     * comprueba el color de cada nodo justo cuando llega a el, asi que puede usarse mientras se
+     * modifica <code>colors</code>. Elegir todas las raices cuesta O(n) en total en vez de recorrer
+     * el mapa desde el principio cada vez.
      */
-    static Optional<Integer> firstUnvisitedNode(Map<Integer, Color> colors) {
-        var node = colors.entrySet()
-                .stream()
-                .filter(x -> x.getValue() == Color.WHITE)
-                .findFirst();
-        return node.map(Map.Entry::getKey);
+    static Iterator<Integer> unvisitedNodes(Map<Integer, Color> colors) {
+        var entries = colors.entrySet().iterator();
+
+        return new Iterator<>() {
+            private Map.Entry<Integer, Color> current;
+
+            @Override
+            public boolean hasNext() {
+                while ((current == null || current.getValue() != Color.WHITE) && entries.hasNext())
+                    current = entries.next();
+                return current != null && current.getValue() == Color.WHITE;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return current.getKey();
+            }
+        };
     }
 }
@@ -0,0 +1,379 @@
+package ucm.erikkarl.exercise4;
+
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.CompactGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ForwardBackwardAlgorithm {
+    /**
+     * Tamano de los subgrafos a partir del cual ya no se dividen mas y se resuelven con Tarjan.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+    /**
+     * Particion de los nodos que ya pertenecen a una componente.
+     */
+    private static final int ASSIGNED = 0;
+
+    private ForwardBackwardAlgorithm() {
+    }
+
+    /**
+     * Igual que {@link #solve(CompactGraph, ForkJoinPool)} pero con un pool propio de
+     * <code>threads</code> hilos que se cierra al terminar.
+     */
+    static LinkedList<Either<Integer, List<Integer>>> solve(CompactGraph graph, int threads) {
+        var pool = new ForkJoinPool(threads);
+        try {
+            return solve(graph, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Calcula las componentes fuertemente conexas de <code>graph</code> en paralelo con el algoritmo
+     * forward-backward.
+     * <p>
+     * Primero descarta ("poda") los nodos sin aristas de entrada o de salida, que forman una componente
+     * ellos solos. Despues elige un nodo pivote y calcula los nodos alcanzables desde el (hacia delante)
+     * y los que pueden alcanzarlo (hacia atras, con el grafo transpuesto). Los nodos de ambos conjuntos
+     * forman la componente del pivote y el resto se divide en tres subgrafos independientes (solo hacia
+     * delante, solo hacia atras y ninguno de los dos) que se resuelven en paralelo en <code>pool</code>.
+     * Los subgrafos pequenos se resuelven con Tarjan.
+     * <p>
+     * Devuelve las mismas componentes que
+     * {@link KosarajusAlgorithm#solve(ucm.erikkarl.graph.IndexedGraph)}, tambien en orden topologico,
+     * aunque los nodos de cada componente pueden estar en otro orden.
+     * <p>
+     * Coste esperado O((n+a) log n), aunque repartido entre los hilos del pool.
+     */
+    static LinkedList<Either<Integer, List<Integer>>> solve(CompactGraph graph, ForkJoinPool pool) {
+        var state = new State(graph);
+        int part = state.nextPartition.getAndIncrement();
+        var remaining = state.trim(part);
+        if (remaining.length > 0)
+            pool.invoke(new PartitionTask(state, remaining, part));
+        return state.componentsInTopologicalOrder();
+    }
+
+    /**
+     * Datos compartidos por todas las tareas. Cada nodo pertenece en cada momento a una sola tarea,
+     * que es la unica que escribe sus posiciones en los arrays.
+     */
+    private static final class State {
+        private final CompactGraph graph;
+        private final CompactGraph transpose;
+        /**
+         * Subgrafo al que pertenece cada nodo, o {@link #ASSIGNED} si ya tiene componente.
+         */
+        private final int[] partition;
+        private final int[] component;
+        /**
+         * Marcas de los recorridos hacia delante y hacia atras. Cada tarea marca con su particion.
+         */
+        private final int[] forward;
+        private final int[] backward;
+        // Datos de Tarjan para los subgrafos pequenos
+        private final int[] index;
+        private final int[] low;
+        private final int[] nextEdge;
+        private final AtomicInteger nextPartition = new AtomicInteger(ASSIGNED + 1);
+        private final AtomicInteger nextComponent = new AtomicInteger();
+
+        State(CompactGraph graph) {
+            int n = graph.getNumberOfNodes();
+            this.graph = graph;
+            this.transpose = graph.transpose();
+            this.partition = new int[n];
+            this.component = new int[n];
+            this.forward = new int[n];
+            this.backward = new int[n];
+            this.index = new int[n];
+            this.low = new int[n];
+            this.nextEdge = new int[n];
+        }
+
+        /**
+         * Asigna una componente propia a los nodos sin aristas de entrada o de salida, y repite
+         * con los que se quedan asi al quitar esos nodos.
+         *
+         * @param part Particion en la que quedan los nodos que no se descartan.
+         * @return Nodos que no se han podido descartar.
+         */
+        int[] trim(int part) {
+            int n = graph.getNumberOfNodes();
+            var inDegrees = new int[n];
+            var outDegrees = new int[n];
+            var queue = new int[n];
+            int tail = 0;
+
+            for (int node = 0; node < n; node++) {
+                inDegrees[node] = transpose.outDegree(node);
+                outDegrees[node] = graph.outDegree(node);
+                if (inDegrees[node] == 0 || outDegrees[node] == 0) {
+                    queue[tail++] = node;
+                    partition[node] = ASSIGNED;
+                } else {
+                    partition[node] = part;
+                }
+            }
+
+            for (int head = 0; head < tail; head++) {
+                int node = queue[head];
+                component[node] = nextComponent.getAndIncrement();
+                for (int e = graph.edgesStart(node); e < graph.edgesEnd(node); e++) {
+                    int adj = graph.edgeTarget(e);
+                    if (partition[adj] != ASSIGNED && --inDegrees[adj] == 0) {
+                        partition[adj] = ASSIGNED;
+                        queue[tail++] = adj;
+                    }
+                }
+                for (int e = transpose.edgesStart(node); e < transpose.edgesEnd(node); e++) {
+                    int adj = transpose.edgeTarget(e);
+                    if (partition[adj] != ASSIGNED && --outDegrees[adj] == 0) {
+                        partition[adj] = ASSIGNED;
+                        queue[tail++] = adj;
+                    }
+                }
+            }
+
+            var remaining = new int[n - tail];
+            int size = 0;
+            for (int node = 0; node < n; node++) {
+                if (partition[node] != ASSIGNED)
+                    remaining[size++] = node;
+            }
+            return remaining;
+        }
+
+        /**
+         * Marca en <code>marks</code> los nodos de la particion <code>part</code> alcanzables desde
+         * <code>pivot</code> en <code>g</code>.
+         */
+        void reach(CompactGraph g, int[] marks, int pivot, int part, int[] queue) {
+            int tail = 0;
+            marks[pivot] = part;
+            queue[tail++] = pivot;
+            for (int head = 0; head < tail; head++) {
+                int node = queue[head];
+                for (int e = g.edgesStart(node); e < g.edgesEnd(node); e++) {
+                    int adj = g.edgeTarget(e);
+                    if (partition[adj] == part && marks[adj] != part) {
+                        marks[adj] = part;
+                        queue[tail++] = adj;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Algoritmo de Tarjan iterativo que solo sigue las aristas entre nodos de <code>nodes</code>,
+         * que deben formar la particion <code>part</code>.
+         */
+        void tarjan(int[] nodes, int part) {
+            var callStack = new int[nodes.length];
+            var componentStack = new int[nodes.length];
+            int counter = 0;
+            int calls = 0;
+            int stacked = 0;
+
+            for (int root : nodes) {
+                if (index[root] != 0)
+                    continue;
+
+                index[root] = low[root] = ++counter;
+                nextEdge[root] = graph.edgesStart(root);
+                componentStack[stacked++] = root;
+                callStack[calls++] = root;
+
+                while (calls > 0) {
+                    int node = callStack[calls - 1];
+                    if (nextEdge[node] < graph.edgesEnd(node)) {
+                        int adj = graph.edgeTarget(nextEdge[node]++);
+                        if (partition[adj] != part) // fuera del subgrafo o ya asignado
+                            continue;
+                        if (index[adj] == 0) {
+                            index[adj] = low[adj] = ++counter;
+                            nextEdge[adj] = graph.edgesStart(adj);
+                            componentStack[stacked++] = adj;
+                            callStack[calls++] = adj;
+                        } else if (index[adj] < low[node]) {
+                            low[node] = index[adj];
+                        }
+                    } else {
+                        calls--;
+                        if (low[node] == index[node]) {
+                            int id = nextComponent.getAndIncrement();
+                            int member;
+                            do {
+                                member = componentStack[--stacked];
+                                component[member] = id;
+                                partition[member] = ASSIGNED;
+                            } while (member != node);
+                        }
+                        if (calls > 0) {
+                            int parent = callStack[calls - 1];
+                            low[parent] = Math.min(low[parent], low[node]);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Agrupa los nodos por componentes y ordena las componentes topologicamente con el algoritmo
+         * de Kahn sobre el grafo de componentes.
+         */
+        LinkedList<Either<Integer, List<Integer>>> componentsInTopologicalOrder() {
+            int n = graph.getNumberOfNodes();
+            int components = nextComponent.get();
+
+            var memberOffsets = new int[components + 1];
+            for (int node = 0; node < n; node++)
+                memberOffsets[component[node] + 1]++;
+            for (int c = 0; c < components; c++)
+                memberOffsets[c + 1] += memberOffsets[c];
+            var members = new int[n];
+            var next = Arrays.copyOf(memberOffsets, components);
+            for (int node = 0; node < n; node++)
+                members[next[component[node]]++] = node;
+
+            var inDegrees = new int[components];
+            for (int node = 0; node < n; node++) {
+                for (int e = graph.edgesStart(node); e < graph.edgesEnd(node); e++) {
+                    int adj = graph.edgeTarget(e);
+                    if (component[adj] != component[node])
+                        inDegrees[component[adj]]++;
+                }
+            }
+            var queue = new int[components];
+            int tail = 0;
+            for (int c = 0; c < components; c++) {
+                if (inDegrees[c] == 0)
+                    queue[tail++] = c;
+            }
+
+            var result = new LinkedList<Either<Integer, List<Integer>>>();
+            for (int head = 0; head < tail; head++) {
+                int c = queue[head];
+                int start = memberOffsets[c];
+                int end = memberOffsets[c + 1];
+                if (end - start > 1) {
+                    var nodes = new LinkedList<Integer>();
+                    for (int i = start; i < end; i++)
+                        nodes.add(graph.label(members[i]));
+                    result.add(new Either.Right<>(nodes));
+                } else {
+                    result.add(new Either.Left<>(graph.label(members[start])));
+                }
+
+                for (int i = start; i < end; i++) {
+                    int node = members[i];
+                    for (int e = graph.edgesStart(node); e < graph.edgesEnd(node); e++) {
+                        int adj = component[graph.edgeTarget(e)];
+                        if (adj != c && --inDegrees[adj] == 0)
+                            queue[tail++] = adj;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Calcula las componentes de un subgrafo formado por los nodos <code>nodes</code>, todos
+     * ellos en la particion <code>part</code>.
+     */
+    @SuppressWarnings("serial")
+    private static final class PartitionTask extends RecursiveAction {
+        private final State state;
+        private final int[] nodes;
+        private final int part;
+
+        PartitionTask(State state, int[] nodes, int part) {
+            this.state = state;
+            this.nodes = nodes;
+            this.part = part;
+        }
+
+        @Override
+        protected void compute() {
+            var forked = new ArrayList<ForkJoinTask<Void>>();
+            var current = nodes;
+            int currentPart = part;
+
+            // El subgrafo mas grande se sigue dividiendo en esta misma tarea para no anidar demasiadas
+            while (current.length > SEQUENTIAL_THRESHOLD) {
+                var queue = new int[current.length];
+                int pivot = current[0];
+                state.reach(state.graph, state.forward, pivot, currentPart, queue);
+                state.reach(state.transpose, state.backward, pivot, currentPart, queue);
+
+                var parts = split(current, currentPart);
+                int largest = 0;
+                for (int i = 1; i < parts.length; i++) {
+                    if (parts[i].length > parts[largest].length)
+                        largest = i;
+                }
+                for (int i = 0; i < parts.length; i++) {
+                    if (i != largest && parts[i].length > 0)
+                        forked.add(new PartitionTask(state, parts[i], partitionOf(parts[i])).fork());
+                }
+                current = parts[largest];
+                currentPart = current.length > 0 ? partitionOf(current) : ASSIGNED;
+            }
+
+            if (current.length > 0)
+                state.tarjan(current, currentPart);
+            forked.forEach(ForkJoinTask::join);
+        }
+
+        private int partitionOf(int[] subgraph) {
+            return state.partition[subgraph[0]];
+        }
+
+        /**
+         * Asigna la componente del pivote a los nodos marcados en ambos recorridos y reparte el
+         * resto en tres subgrafos con particiones nuevas.
+         */
+        private int[][] split(int[] subgraph, int currentPart) {
+            int id = state.nextComponent.getAndIncrement();
+            int[] sizes = new int[3];
+            for (int node : subgraph) {
+                boolean isForward = state.forward[node] == currentPart;
+                boolean isBackward = state.backward[node] == currentPart;
+                if (!isForward || !isBackward)
+                    sizes[isForward ? 0 : isBackward ? 1 : 2]++;
+            }
+
+            int[][] parts = {new int[sizes[0]], new int[sizes[1]], new int[sizes[2]]};
+            int[] partitions = {
+                    state.nextPartition.getAndIncrement(),
+                    state.nextPartition.getAndIncrement(),
+                    state.nextPartition.getAndIncrement()
+            };
+            Arrays.fill(sizes, 0);
+            for (int node : subgraph) {
+                boolean isForward = state.forward[node] == currentPart;
+                boolean isBackward = state.backward[node] == currentPart;
+                if (isForward && isBackward) {
+                    state.component[node] = id;
+                    state.partition[node] = ASSIGNED;
+                } else {
+                    int p = isForward ? 0 : isBackward ? 1 : 2;
+                    parts[p][sizes[p]++] = node;
+                    state.partition[node] = partitions[p];
+                }
+            }
+            return parts;
+        }
+    }
+}
@@ -2,13 +2,20 @@ package ucm.erikkarl.exercise4;
 
 import ucm.erikkarl.Either;
 import ucm.erikkarl.graph.Graph;
+import ucm.erikkarl.graph.IndexedGraph;
+import ucm.erikkarl.graph.IntArray;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class KosarajusAlgorithm {
+    private static final int WHITE = Color.WHITE.ordinal();
+    private static final int GRAY = Color.GRAY.ordinal();
+    private static final int BLACK = Color.BLACK.ordinal();
+
     private KosarajusAlgorithm() {
     }
 
@@ -18,8 +25,9 @@ public class KosarajusAlgorithm {
      * Primero, recorre todo el algoritmo por busqueda en profundidad y va anadiendo los nodos a una lista
      * en el mismo orden que termina de recorrer cada uno.
      * <p>
-     * Segundo, calcula el grafo transpuesto de <code>graph</code>, y lo recorre tambien mediante busqueda
-     * en profundidad pero empezando por los nodos al final de la lista que se calculo en el primer recorrido.
+     * Segundo, toma el grafo transpuesto de <code>graph</code>, que solo se construye la primera vez, y lo
+     * recorre tambien mediante busqueda en profundidad pero empezando por los nodos al final de la lista
+     * que se calculo en el primer recorrido.
      * <p>
      * Coste lineal en el numero de vertices (n) y de aristas (a), es decir, O(n+a).
      */
@@ -27,22 +35,25 @@ public class KosarajusAlgorithm {
         var result = new LinkedList<Either<Integer, List<Integer>>>();
         var colors = Exercise4.initColors(graph);
         var nodesOrderedByFinishTime = new LinkedList<Integer>();
+        var stack = new int[colors.size()];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Iterator<Integer>[] pendingAdjacents = new Iterator[colors.size()];
 
         // 1er recorrido del grafo
-        while (colors.values().stream().anyMatch(color -> color == Color.WHITE)) {
-            Integer node = Exercise4.firstUnvisitedNode(colors).get();
-            dfsVisit(graph, node, colors, nodesOrderedByFinishTime);
+        var roots = Exercise4.unvisitedNodes(colors);
+        while (roots.hasNext()) {
+            dfsVisit(graph, roots.next(), colors, nodesOrderedByFinishTime, stack, pendingAdjacents);
         }
 
         // 2do recorrido del grafo
-        var transpose = transposeGraph(graph);
+        var transpose = graph.transpose();
         colors = Exercise4.initColors(graph);
 
         while (!nodesOrderedByFinishTime.isEmpty()) {
             var node = nodesOrderedByFinishTime.pop();
             if (colors.get(node) == Color.WHITE) {
                 var component = new LinkedList<Integer>();
-                dfsVisit(transpose, node, colors, component);
+                dfsVisit(transpose, node, colors, component, stack, pendingAdjacents);
                 if (component.size() > 1)
                     result.add(new Either.Right<>(component));
                 else
@@ -55,40 +66,137 @@ public class KosarajusAlgorithm {
     /**
      * Funcion para visitar los nodos de <code>graph</code> en profundidad. Anade a la lista
      * <code>nodesList</code> los nodos que se van recorriendo.
+     * <p>
+     * Usa una pila explicita en vez de recursion para no desbordar la pila del hilo con caminos
+     * muy largos.
      *
-     * @param graph     Grafo que se visita.
-     * @param node      Nodo que se esta visitando actualmente.
-     * @param colors    Mapa para marcar los nodos visitados.
-     * @param nodesList Lista de los nodos visitados.
+     * @param graph            Grafo que se visita.
+     * @param node             Nodo desde el que empieza la visita.
+     * @param colors           Mapa para marcar los nodos visitados.
+     * @param nodesList        Lista de los nodos visitados.
+     * @param stack            Pila de nodos que se estan visitando. Debe caber un elemento por nodo.
+     * @param pendingAdjacents Adyacentes que le quedan por recorrer a cada nodo de <code>stack</code>.
      */
-    private static void dfsVisit(Graph<Integer> graph, int node, Map<Integer, Color> colors, LinkedList<Integer> nodesList) {
+    private static void dfsVisit(Graph<Integer> graph,
+                                 int node,
+                                 Map<Integer, Color> colors,
+                                 LinkedList<Integer> nodesList,
+                                 int[] stack,
+                                 Iterator<Integer>[] pendingAdjacents) {
+        int size = 0;
         colors.put(node, Color.GRAY);
+        stack[size] = node;
+        pendingAdjacents[size++] = graph.adjacentNodes(node).iterator();
 
-        for (Integer adj : graph.adjacentNodes(node)) {
-            if (colors.get(adj) == Color.WHITE) {
-                dfsVisit(graph, adj, colors, nodesList);
+        while (size > 0) {
+            var adjacents = pendingAdjacents[size - 1];
+            if (adjacents.hasNext()) {
+                Integer adj = adjacents.next();
+                if (colors.get(adj) == Color.WHITE) {
+                    colors.put(adj, Color.GRAY);
+                    stack[size] = adj;
+                    pendingAdjacents[size++] = graph.adjacentNodes(adj).iterator();
+                }
+            } else {
+                int finished = stack[--size];
+                pendingAdjacents[size] = null;
+                colors.put(finished, Color.BLACK);
+                nodesList.push(finished);
             }
         }
-        colors.put(node, Color.BLACK);
-        nodesList.push(node);
     }
 
     /**
-     * Devuelve un grafo que es el transpuesto de <code>graph</code>.
+     * Igual que {@link #solve(Graph)} pero sobre cualquier {@link IndexedGraph}, como un grafo compacto
+     * o uno fuera del heap. Los nodos se identifican por su indice y solo se traducen a su valor
+     * original al construir el resultado.
+     */
+    static LinkedList<Either<Integer, List<Integer>>> solve(IndexedGraph graph) {
+        return solveCompact(graph).toList();
+    }
+
+    /**
+     * Igual que {@link #solve(IndexedGraph)} pero devuelve el resultado en un {@link SolveResult}.
+     * <p>
+     * Los colores, la pila y el orden en que terminan de visitarse los nodos se guardan en arrays
+     * creados por {@link IndexedGraph#newIntArray(int)}, asi que estan fuera del heap si el grafo lo
+     * esta. En el heap solo quedan los dos arrays del resultado.
      */
-    private static Graph<Integer> transposeGraph(Graph<Integer> graph) {
-        var transpose = new Graph<Integer>();
-
-        for (Map.Entry<Integer, Set<Integer>> entry : graph) {
-            var node = entry.getKey();
-            var adjacents = entry.getValue();
-            // Nodes with no other adjacent nodes still exist in the transpose graph
-            transpose.addNode(node);
-            for (Integer adj : adjacents) {
-                transpose.addEdges(adj, List.of(node));
+    static SolveResult solveCompact(IndexedGraph graph) {
+        int n = graph.getNumberOfNodes();
+        var colors = graph.newIntArray(n);
+        // Pila de nodos: el ultimo en terminar de visitarse queda en la cima
+        var nodesOrderedByFinishTime = graph.newIntArray(n);
+        int finished = 0;
+        var stack = graph.newIntArray(n);
+        var nextEdge = graph.newIntArray(n);
+
+        // 1er recorrido del grafo
+        for (int node = 0; node < n; node++) {
+            if (colors.get(node) == WHITE)
+                finished = dfsVisit(graph, node, colors, nodesOrderedByFinishTime, finished, stack, nextEdge);
+        }
+
+        // 2do recorrido del grafo
+        var transpose = graph.transpose();
+        colors.fill(WHITE);
+        var component = graph.newIntArray(n);
+        var nodes = new int[n];
+        var offsets = new int[n + 1];
+        int components = 0;
+        int position = 0;
+
+        while (finished > 0) {
+            int node = nodesOrderedByFinishTime.get(--finished);
+            if (colors.get(node) == WHITE) {
+                int size = dfsVisit(transpose, node, colors, component, 0, stack, nextEdge);
+                offsets[components++] = position;
+                for (int i = size - 1; i >= 0; i--)
+                    nodes[position++] = graph.label(component.get(i));
             }
         }
-        return transpose;
+        offsets[components] = position;
+        return new SolveResult(nodes, Arrays.copyOf(offsets, components + 1));
     }
 
+    /**
+     * Igual que {@link #dfsVisit(Graph, int, Map, LinkedList, int[], Iterator[])} pero sobre un
+     * {@link IndexedGraph}. Los nodos visitados se guardan en <code>nodes</code> a partir de la
+     * posicion <code>size</code>.
+     *
+     * @param colors   Color de cada nodo, con el ordinal de {@link Color}.
+     * @param nextEdge Siguiente arista por recorrer de cada nodo que se esta visitando.
+     * @return Numero de nodos en <code>nodes</code> tras la visita.
+     */
+    private static int dfsVisit(IndexedGraph graph,
+                                int node,
+                                IntArray colors,
+                                IntArray nodes,
+                                int size,
+                                IntArray stack,
+                                IntArray nextEdge) {
+        int depth = 0;
+        colors.set(node, GRAY);
+        nextEdge.set(node, graph.edgesStart(node));
+        stack.set(depth++, node);
+
+        while (depth > 0) {
+            int current = stack.get(depth - 1);
+            int edge = nextEdge.get(current);
+            if (edge < graph.edgesEnd(current)) {
+                nextEdge.set(current, edge + 1);
+                int adj = graph.edgeTarget(edge);
+                if (colors.get(adj) == WHITE) {
+                    colors.set(adj, GRAY);
+                    nextEdge.set(adj, graph.edgesStart(adj));
+                    stack.set(depth++, adj);
+                }
+            } else {
+                depth--;
+                colors.set(current, BLACK);
+                nodes.set(size++, current);
+            }
+        }
+        return size;
+    }
 }
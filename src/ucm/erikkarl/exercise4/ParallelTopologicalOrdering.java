@@ -0,0 +1,126 @@
+package ucm.erikkarl.exercise4;
+
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.CompactGraph;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+public class ParallelTopologicalOrdering {
+    /**
+     * Numero de nodos de un nivel a partir del cual merece la pena repartirlo entre varios hilos.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 2048;
+
+    private ParallelTopologicalOrdering() {
+    }
+
+    /**
+     * Igual que {@link #solve(CompactGraph, ForkJoinPool)} usando el pool comun de Java.
+     */
+    static Optional<LinkedList<Either<Integer, List<Integer>>>> solve(CompactGraph graph) {
+        return solve(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Devuelve una lista con los nodos del grafo en orden topologico usando el algoritmo de Kahn
+     * por niveles: primero van los nodos sin aristas de entrada, luego los que solo tienen aristas
+     * desde el primer nivel, y asi sucesivamente.
+     * <p>
+     * Los grados de entrada se calculan en paralelo y cada nivel se reparte entre los hilos de
+     * <code>pool</code>. Dentro de cada nivel los nodos se ordenan por su indice para que el
+     * resultado no dependa del reparto entre hilos.
+     * <p>
+     * Si el grafo tiene algun bucle, los nodos del bucle nunca llegan a grado de entrada 0 y quedan
+     * sin procesar. En ese caso devuelve un <code>Optional</code> vacio, sin lanzar excepciones, para
+     * que se puedan calcular las componentes fuertemente conexas.
+     * <p>
+     * Su coste es lineal en el numero de nodos (n) y el de aristas (a), es decir, O(n+a).
+     */
+    static Optional<LinkedList<Either<Integer, List<Integer>>>> solve(CompactGraph graph, ForkJoinPool pool) {
+        int n = graph.getNumberOfNodes();
+        var inDegrees = new AtomicIntegerArray(n);
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(node -> {
+            for (int e = graph.edgesStart(node); e < graph.edgesEnd(node); e++)
+                inDegrees.incrementAndGet(graph.edgeTarget(e));
+        })).join();
+
+        // Cada nivel ocupa un tramo consecutivo de order, asi que hace tambien de cola
+        var order = new int[n];
+        var processed = new AtomicInteger();
+        for (int node = 0; node < n; node++) {
+            if (inDegrees.get(node) == 0)
+                order[processed.getAndIncrement()] = node;
+        }
+
+        int levelStart = 0;
+        while (levelStart < processed.get()) {
+            int levelEnd = processed.get();
+            Arrays.sort(order, levelStart, levelEnd);
+            var level = new LevelTask(graph, inDegrees, order, processed, levelStart, levelEnd);
+            if (levelEnd - levelStart > SEQUENTIAL_THRESHOLD)
+                pool.invoke(level);
+            else
+                level.compute();
+            levelStart = levelEnd;
+        }
+
+        if (processed.get() < n)
+            return Optional.empty();
+
+        var result = new LinkedList<Either<Integer, List<Integer>>>();
+        for (int node : order)
+            result.add(new Either.Left<>(graph.label(node)));
+        return Optional.of(result);
+    }
+
+    /**
+     * Quita las aristas que salen de los nodos <code>order[from]</code> a <code>order[to - 1]</code>
+     * y anade al final de <code>order</code> los nodos que se quedan sin aristas de entrada.
+     */
+    @SuppressWarnings("serial")
+    private static final class LevelTask extends RecursiveAction {
+        private final CompactGraph graph;
+        private final AtomicIntegerArray inDegrees;
+        private final int[] order;
+        private final AtomicInteger processed;
+        private final int from;
+        private final int to;
+
+        LevelTask(CompactGraph graph, AtomicIntegerArray inDegrees, int[] order, AtomicInteger processed,
+                  int from, int to) {
+            this.graph = graph;
+            this.inDegrees = inDegrees;
+            this.order = order;
+            this.processed = processed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SEQUENTIAL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LevelTask(graph, inDegrees, order, processed, from, middle),
+                        new LevelTask(graph, inDegrees, order, processed, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                int node = order[i];
+                for (int e = graph.edgesStart(node); e < graph.edgesEnd(node); e++) {
+                    int adj = graph.edgeTarget(e);
+                    if (inDegrees.decrementAndGet(adj) == 0)
+                        order[processed.getAndIncrement()] = adj;
+                }
+            }
+        }
+    }
+}
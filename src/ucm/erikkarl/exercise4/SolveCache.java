@@ -0,0 +1,115 @@
+package ucm.erikkarl.exercise4;
+
+import ucm.erikkarl.graph.CompactGraph;
+import ucm.erikkarl.graph.GraphFingerprint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache de las soluciones de {@link Exercise4#solveCompact(CompactGraph)}, para no volver a resolver
+ * grafos repetidos. Los grafos se identifican por su {@link GraphFingerprint}, y cuando los resultados
+ * guardados suman mas de <code>capacity</code> nodos se descartan los que hace mas tiempo que no se usan.
+ * <p>
+ * Se puede usar desde varios hilos a la vez. Al medir tiempos hay que desactivarla con
+ * {@link #setEnabled(boolean)}, o no usarla, para que se mida lo que cuesta resolver cada grafo.
+ */
+public final class SolveCache {
+    private final long capacity;
+    private final Map<GraphFingerprint, SolveResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedNodes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private volatile boolean enabled = true;
+
+    /**
+     * @param capacity Numero maximo de nodos que suman todos los resultados guardados.
+     */
+    public SolveCache(long capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Devuelve la solucion guardada para un grafo identico a <code>graph</code> o, si no hay ninguna,
+     * resuelve <code>graph</code> y guarda la solucion. Si la cache esta desactivada siempre resuelve
+     * el grafo.
+     */
+    public SolveResult solve(CompactGraph graph) {
+        if (!enabled)
+            return Exercise4.solveCompact(graph);
+
+        return solve(graph, GraphFingerprint.of(graph));
+    }
+
+    /**
+     * Igual que {@link #solve(CompactGraph)} cuando ya se conoce la huella de <code>graph</code>.
+     */
+    public SolveResult solve(CompactGraph graph, GraphFingerprint fingerprint) {
+        if (!enabled)
+            return Exercise4.solveCompact(graph);
+
+        var cached = get(fingerprint);
+        if (cached.isPresent())
+            return cached.get();
+
+        var result = Exercise4.solveCompact(graph);
+        put(fingerprint, result);
+        return result;
+    }
+
+    /**
+     * Devuelve la solucion guardada para el grafo con huella <code>fingerprint</code>, contando un
+     * acierto o un fallo.
+     */
+    public synchronized Optional<SolveResult> get(GraphFingerprint fingerprint) {
+        var result = results.get(fingerprint);
+        if (result != null)
+            hits++;
+        else
+            misses++;
+        return Optional.ofNullable(result);
+    }
+
+    public synchronized void put(GraphFingerprint fingerprint, SolveResult result) {
+        if (result.getNumberOfNodes() > capacity)
+            return;
+        var previous = results.put(fingerprint, result);
+        if (previous != null)
+            storedNodes -= previous.getNumberOfNodes();
+        storedNodes += result.getNumberOfNodes();
+
+        var iterator = results.values().iterator();
+        while (storedNodes > capacity) {
+            storedNodes -= iterator.next().getNumberOfNodes();
+            iterator.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        results.clear();
+        storedNodes = 0;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+}
@@ -0,0 +1,204 @@
+package ucm.erikkarl.exercise4;
+
+import ucm.erikkarl.Either;
+
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Resultado de {@link Exercise4#solveCompact(ucm.erikkarl.graph.CompactGraph)} guardado en dos arrays
+ * de enteros en vez de en una lista de {@link Either}: los valores de todos los nodos, agrupados por
+ * componentes y con las componentes en orden topologico, y la posicion donde empieza cada componente.
+ * Si el grafo no tiene bucles todas las componentes tienen un nodo y el primer array es directamente
+ * el orden topologico.
+ * <p>
+ * Es inmutable. Las vistas que devuelve no copian los arrays.
+ */
+public final class SolveResult {
+    private final int[] nodes;
+    /**
+     * Los nodos de la componente <code>c</code> van de <code>nodes[componentOffsets[c]]</code> a
+     * <code>nodes[componentOffsets[c + 1] - 1]</code>.
+     */
+    private final int[] componentOffsets;
+    private final boolean singletonComponents;
+
+    SolveResult(int[] nodes, int[] componentOffsets) {
+        this.nodes = nodes;
+        this.componentOffsets = componentOffsets;
+        this.singletonComponents = componentOffsets.length - 1 == nodes.length;
+    }
+
+    /**
+     * Crea un resultado a partir de sus arrays, que no se copian, por ejemplo para recuperar uno
+     * guardado. No se pueden modificar despues.
+     *
+     * @param nodes            Valores de los nodos agrupados por componentes.
+     * @param componentOffsets Posicion en <code>nodes</code> donde empieza cada componente, mas el
+     *                         numero de nodos al final.
+     */
+    public static SolveResult of(int[] nodes, int[] componentOffsets) {
+        if (componentOffsets.length == 0 || componentOffsets[0] != 0
+                || componentOffsets[componentOffsets.length - 1] != nodes.length)
+            throw new IllegalArgumentException("Component offsets don't match the number of nodes");
+        for (int c = 1; c < componentOffsets.length; c++) {
+            if (componentOffsets[c] <= componentOffsets[c - 1])
+                throw new IllegalArgumentException("Components cannot be empty");
+        }
+        return new SolveResult(nodes, componentOffsets);
+    }
+
+    /**
+     * Convierte un resultado con el formato de {@link Exercise4#solve(ucm.erikkarl.graph.CompactGraph)}.
+     */
+    public static SolveResult fromList(List<Either<Integer, List<Integer>>> solution) {
+        int size = 0;
+        for (Either<Integer, List<Integer>> either : solution)
+            size += either instanceof Either.Right ? ((Either.Right<Integer, List<Integer>>) either).getValue().size() : 1;
+
+        var nodes = new int[size];
+        var offsets = new int[solution.size() + 1];
+        int position = 0;
+        int component = 0;
+        for (Either<Integer, List<Integer>> either : solution) {
+            offsets[component++] = position;
+            if (either instanceof Either.Right) {
+                for (Integer node : ((Either.Right<Integer, List<Integer>>) either).getValue())
+                    nodes[position++] = node;
+            } else {
+                nodes[position++] = ((Either.Left<Integer, List<Integer>>) either).getValue();
+            }
+        }
+        offsets[component] = position;
+        return new SolveResult(nodes, offsets);
+    }
+
+    /**
+     * Indica si todas las componentes tienen un solo nodo, y por tanto si el array de nodos es un
+     * orden topologico. Es asi siempre que el grafo no tiene bucles, pero tambien si sus unicos bucles
+     * son aristas de un nodo a si mismo, que el resultado no guarda. Para saber si el grafo es aciclico
+     * hay que usar {@link Condensation#isAcyclic()}.
+     */
+    public boolean hasOnlySingletonComponents() {
+        return singletonComponents;
+    }
+
+    public int getNumberOfNodes() {
+        return nodes.length;
+    }
+
+    public int getNumberOfComponents() {
+        return componentOffsets.length - 1;
+    }
+
+    /**
+     * Nodo en la posicion <code>position</code>.
+     */
+    public int node(int position) {
+        return nodes[position];
+    }
+
+    /**
+     * Posicion del primer nodo de la componente <code>component</code>.
+     */
+    public int componentStart(int component) {
+        return componentOffsets[component];
+    }
+
+    /**
+     * Posicion tras el ultimo nodo de la componente <code>component</code>.
+     */
+    public int componentEnd(int component) {
+        return componentOffsets[component + 1];
+    }
+
+    /**
+     * Vista de solo lectura de todos los nodos en orden.
+     */
+    public IntBuffer order() {
+        return IntBuffer.wrap(nodes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Vista de solo lectura de los nodos de la componente <code>component</code>.
+     */
+    public IntBuffer component(int component) {
+        int start = componentOffsets[component];
+        return IntBuffer.wrap(nodes, start, componentOffsets[component + 1] - start).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Vista con el formato de {@link Exercise4#solve(ucm.erikkarl.graph.CompactGraph)}: las componentes
+     * de un solo nodo como {@link Either.Left} y el resto como {@link Either.Right}, en orden topologico.
+     * No copia los nodos; cada {@link Either} se crea al acceder a el.
+     */
+    public List<Either<Integer, List<Integer>>> asList() {
+        return new ComponentList();
+    }
+
+    /**
+     * Copia el resultado en una lista con el formato de {@link Exercise4#solve(ucm.erikkarl.graph.CompactGraph)}.
+     */
+    public LinkedList<Either<Integer, List<Integer>>> toList() {
+        var result = new LinkedList<Either<Integer, List<Integer>>>();
+        for (int c = 0; c < getNumberOfComponents(); c++) {
+            int start = componentOffsets[c];
+            int end = componentOffsets[c + 1];
+            if (end - start > 1) {
+                var component = new LinkedList<Integer>();
+                for (int i = start; i < end; i++)
+                    component.add(nodes[i]);
+                result.add(new Either.Right<>(component));
+            } else {
+                result.add(new Either.Left<>(nodes[start]));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return asList().toString();
+    }
+
+    private final class ComponentList extends AbstractList<Either<Integer, List<Integer>>> implements RandomAccess {
+        @Override
+        public Either<Integer, List<Integer>> get(int component) {
+            int start = componentOffsets[component];
+            int end = componentOffsets[component + 1];
+            if (end - start > 1)
+                return new Either.Right<>(new NodeList(start, end));
+            return new Either.Left<>(nodes[start]);
+        }
+
+        @Override
+        public int size() {
+            return getNumberOfComponents();
+        }
+    }
+
+    private final class NodeList extends AbstractList<Integer> implements RandomAccess {
+        private final int start;
+        private final int end;
+
+        NodeList(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= end - start)
+                throw new IndexOutOfBoundsException(index);
+            return nodes[start + index];
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+}
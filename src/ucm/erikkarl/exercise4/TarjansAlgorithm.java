@@ -0,0 +1,206 @@
+package ucm.erikkarl.exercise4;
+
+import ucm.erikkarl.Either;
+import ucm.erikkarl.graph.CompactGraph;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+public class TarjansAlgorithm {
+    /**
+     * Valor de <code>index</code> para los nodos que ya pertenecen a una componente.
+     */
+    private static final int ASSIGNED = Integer.MAX_VALUE;
+
+    private TarjansAlgorithm() {
+    }
+
+    /**
+     * Calcula las componentes fuertemente conexas de <code>graph</code> con el algoritmo de Tarjan,
+     * recorriendo el grafo una sola vez.
+     * <p>
+     * Tarjan encuentra las componentes en orden topologico inverso, asi que se van colocando desde
+     * el final de la lista hacia el principio. Si todas las componentes tienen un solo nodo el
+     * resultado es directamente el orden topologico del grafo; si no, es la lista de componentes
+     * (igual que la de {@link KosarajusAlgorithm#solve(ucm.erikkarl.graph.IndexedGraph)}). No hace
+     * falta calcular el grafo transpuesto ni lanzar excepciones al encontrar un bucle.
+     * <p>
+     * Coste lineal en el numero de vertices (n) y de aristas (a), es decir, O(n+a).
+     */
+    static LinkedList<Either<Integer, List<Integer>>> solve(CompactGraph graph) {
+        return condense(graph, false).toList();
+    }
+
+    /**
+     * Igual que {@link #solve(CompactGraph)} pero devuelve el resultado en arrays, sin crear un
+     * objeto por cada nodo.
+     */
+    static SolveResult solveCompact(CompactGraph graph) {
+        return condense(graph, false).toSolveResult();
+    }
+
+    /**
+     * Calcula el grafo de componentes de <code>graph</code> en el mismo recorrido que encuentra
+     * las componentes.
+     * <p>
+     * Cuando Tarjan termina una componente, todos los nodos a los que llegan sus aristas ya tienen
+     * componente (la suya o una anterior), asi que en ese momento se anotan las aristas del grafo
+     * de componentes sin repetir. Al final se renumeran las componentes para que sigan el orden
+     * topologico en vez del orden en que se encontraron.
+     * <p>
+     * La busqueda en profundidad usa pilas explicitas en vez de recursion, por lo que no desborda
+     * la pila del hilo con caminos muy largos.
+     * <p>
+     * Coste lineal en el numero de vertices (n) y de aristas (a), es decir, O(n+a).
+     */
+    static Condensation condense(CompactGraph graph) {
+        return condense(graph, true);
+    }
+
+    /**
+     * Igual que {@link #condense(CompactGraph)}, pero si <code>withComponentGraph</code> es falso
+     * no calcula las aristas entre componentes (el resultado no tiene grafo de componentes). Asi
+     * {@link #solve(CompactGraph)} no tiene que recorrer dos veces las aristas.
+     */
+    private static Condensation condense(CompactGraph graph, boolean withComponentGraph) {
+        int n = graph.getNumberOfNodes();
+        // Orden de descubrimiento de cada nodo (0 si no se ha visitado)
+        var index = new int[n];
+        var low = new int[n];
+        // Siguiente arista por explorar de cada nodo en la pila de llamadas
+        var nextEdge = new int[n];
+        var callStack = new int[n];
+        var componentStack = new int[n];
+        // Nodos agrupados por componentes, en orden topologico de componentes
+        var members = new int[n];
+        // Posiciones de members donde empieza cada componente, de la ultima a la primera
+        var componentEnds = new int[n + 1];
+        // Componente de cada nodo, numeradas en el orden en que se encuentran
+        var componentOf = new int[n];
+        // Aristas del grafo de componentes, agrupadas tambien en el orden en que se encuentran
+        int[] dagTargets = null;
+        int[] dagEnds = null;
+        // Ultima componente que ha anotado una arista hacia cada componente
+        int[] lastSource = null;
+        if (withComponentGraph) {
+            dagTargets = new int[graph.getNumberOfEdges()];
+            dagEnds = new int[n + 1];
+            lastSource = new int[n];
+            Arrays.fill(lastSource, -1);
+        }
+        int dagEdges = 0;
+        boolean selfLoop = false;
+        int components = 0;
+        int position = n;
+        int counter = 0;
+        int calls = 0;
+        int stacked = 0;
+
+        componentEnds[0] = n;
+        for (int root = 0; root < n; root++) {
+            if (index[root] != 0)
+                continue;
+
+            index[root] = low[root] = ++counter;
+            nextEdge[root] = graph.edgesStart(root);
+            componentStack[stacked++] = root;
+            callStack[calls++] = root;
+
+            while (calls > 0) {
+                int node = callStack[calls - 1];
+                if (nextEdge[node] < graph.edgesEnd(node)) {
+                    int adj = graph.edgeTarget(nextEdge[node]++);
+                    if (index[adj] == 0) {
+                        index[adj] = low[adj] = ++counter;
+                        nextEdge[adj] = graph.edgesStart(adj);
+                        componentStack[stacked++] = adj;
+                        callStack[calls++] = adj;
+                    } else if (adj == node) {
+                        selfLoop = true;
+                    } else if (index[adj] < low[node]) { // adj sigue en la pila de componentes
+                        low[node] = index[adj];
+                    }
+                } else {
+                    calls--;
+                    if (low[node] == index[node]) {
+                        int start = stacked;
+                        do {
+                            int member = componentStack[--start];
+                            index[member] = ASSIGNED;
+                            componentOf[member] = components;
+                        } while (componentStack[start] != node);
+
+                        if (withComponentGraph) {
+                            dagEdges = addComponentEdges(graph, componentStack, start, stacked, components,
+                                    componentOf, lastSource, dagTargets, dagEdges);
+                        }
+
+                        int size = stacked - start;
+                        position -= size;
+                        System.arraycopy(componentStack, start, members, position, size);
+                        components++;
+                        componentEnds[components] = position;
+                        if (withComponentGraph)
+                            dagEnds[components] = dagEdges;
+                        stacked = start;
+                    }
+                    if (calls > 0) {
+                        int parent = callStack[calls - 1];
+                        low[parent] = Math.min(low[parent], low[node]);
+                    }
+                }
+            }
+        }
+
+        // Renumera las componentes: la k-esima encontrada pasa a ser la (components - 1 - k)
+        int last = components - 1;
+        for (int node = 0; node < n; node++)
+            componentOf[node] = last - componentOf[node];
+
+        var memberOffsets = new int[components + 1];
+        for (int c = 0; c < components; c++)
+            memberOffsets[c] = componentEnds[components - c];
+        memberOffsets[components] = n;
+
+        CompactGraph componentGraph = null;
+        if (withComponentGraph) {
+            var labels = new int[components];
+            var dagOffsets = new int[components + 1];
+            var dag = new int[dagEdges];
+            for (int c = 0; c < components; c++) {
+                int found = last - c;
+                labels[c] = c;
+                dagOffsets[c + 1] = dagOffsets[c] + dagEnds[found + 1] - dagEnds[found];
+                int edge = dagOffsets[c];
+                for (int e = dagEnds[found]; e < dagEnds[found + 1]; e++)
+                    dag[edge++] = last - dagTargets[e];
+            }
+            componentGraph = CompactGraph.of(labels, dagOffsets, dag);
+        }
+        return new Condensation(graph, componentOf, memberOffsets, members, componentGraph,
+                components == n && !selfLoop);
+    }
+
+    /**
+     * Anota en <code>dagTargets</code>, a partir de la posicion <code>dagEdges</code>, las aristas
+     * desde la componente <code>component</code> (formada por <code>nodes[start]</code> a
+     * <code>nodes[end - 1]</code>) hacia otras componentes, sin repetirlas.
+     *
+     * @return Numero de aristas en <code>dagTargets</code> tras anotarlas.
+     */
+    private static int addComponentEdges(CompactGraph graph, int[] nodes, int start, int end, int component,
+                                         int[] componentOf, int[] lastSource, int[] dagTargets, int dagEdges) {
+        for (int i = start; i < end; i++) {
+            int member = nodes[i];
+            for (int e = graph.edgesStart(member); e < graph.edgesEnd(member); e++) {
+                int target = componentOf[graph.edgeTarget(e)];
+                if (target != component && lastSource[target] != component) {
+                    lastSource[target] = component;
+                    dagTargets[dagEdges++] = target;
+                }
+            }
+        }
+        return dagEdges;
+    }
+}
@@ -2,29 +2,39 @@ package ucm.erikkarl.exercise4;
 
 import ucm.erikkarl.Either;
 import ucm.erikkarl.graph.Graph;
+import ucm.erikkarl.graph.IndexedGraph;
+import ucm.erikkarl.graph.IntArray;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 public class TopologicalOrdering {
+    private static final int WHITE = Color.WHITE.ordinal();
+    private static final int GRAY = Color.GRAY.ordinal();
+    private static final int BLACK = Color.BLACK.ordinal();
+
     private TopologicalOrdering() {
     }
 
     /**
      * Devuelve una lista con los nodos del grafo en orden topologico. Si encuentra un bucle no puede haber
      * ordenamiento topologico asi que lanza una excepcion (que es lanzada por
-     * {@link #dfsVisit(Graph, int, Map, LinkedList)}).
+     * {@link #dfsVisit(Graph, int, Map, LinkedList, int[], Iterator[])}).
      * <p>
      * Su coste es lineal en el numero de nodos (n) y el de aristas (a), es decir, O(n+a).
      */
     static LinkedList<Either<Integer, List<Integer>>> solve(Graph<Integer> graph) {
         var result = new LinkedList<Either<Integer, List<Integer>>>();
         var colors = Exercise4.initColors(graph);
+        var stack = new int[colors.size()];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Iterator<Integer>[] pendingAdjacents = new Iterator[colors.size()];
 
-        while (colors.values().stream().anyMatch(color -> color == Color.WHITE)) {
-            Integer node = Exercise4.firstUnvisitedNode(colors).get();
-            dfsVisit(graph, node, colors, result);
+        var roots = Exercise4.unvisitedNodes(colors);
+        while (roots.hasNext()) {
+            dfsVisit(graph, roots.next(), colors, result, stack, pendingAdjacents);
         }
         return result;
     }
@@ -32,29 +42,129 @@ public class TopologicalOrdering {
     /**
      * Funcion para visitar los nodos de un grafo <code>graph</code> en profundidad e ir creando
      * una lista con sus nodos en orden topologico. Si encuentra un bucle lanza una excepcion.
+     * <p>
+     * En vez de ser recursiva usa una pila explicita, asi que no desborda la pila del hilo aunque
+     * el grafo tenga caminos muy largos.
      *
      * @param graph            Grafo del que se calcula el orden topologico de sus nodos.
      * @param node             Proximo nodo a visitar.
      * @param colors           Mapa para marcar los nodos sin visitar, los que se estan visitando y aquellos
      *                         cuyos hijos ya se han visitado.
      * @param topologicalOrder Lista de nodos siguiendo su orden topologico.
+     * @param stack            Pila de nodos que se estan visitando. Debe caber un elemento por nodo.
+     * @param pendingAdjacents Adyacentes que le quedan por recorrer a cada nodo de <code>stack</code>.
      */
     private static void dfsVisit(Graph<Integer> graph,
                                  int node,
                                  Map<Integer, Color> colors,
-                                 LinkedList<Either<Integer, List<Integer>>> topologicalOrder) {
+                                 LinkedList<Either<Integer, List<Integer>>> topologicalOrder,
+                                 int[] stack,
+                                 Iterator<Integer>[] pendingAdjacents) {
+        int size = 0;
         colors.put(node, Color.GRAY);
+        stack[size] = node;
+        pendingAdjacents[size++] = graph.adjacentNodes(node).iterator();
 
-        for (Integer adj : graph.adjacentNodes(node)) {
-            switch (colors.get(adj)) {
-                case WHITE -> dfsVisit(graph, adj, colors, topologicalOrder);
-                case GRAY -> throw new IllegalArgumentException("There's a loop, so there's no topological order");
-                default -> { // BLACK
+        while (size > 0) {
+            var adjacents = pendingAdjacents[size - 1];
+            if (adjacents.hasNext()) {
+                Integer adj = adjacents.next();
+                switch (colors.get(adj)) {
+                    case WHITE -> {
+                        colors.put(adj, Color.GRAY);
+                        stack[size] = adj;
+                        pendingAdjacents[size++] = graph.adjacentNodes(adj).iterator();
+                    }
+                    case GRAY -> throw new IllegalArgumentException("There's a loop, so there's no topological order");
+                    default -> { // BLACK
+                    }
                 }
+            } else {
+                int finished = stack[--size];
+                pendingAdjacents[size] = null;
+                colors.put(finished, Color.BLACK);
+                topologicalOrder.addFirst(new Either.Left<>(finished));
             }
         }
+    }
+
+    /**
+     * Igual que {@link #solve(Graph)} pero sobre cualquier {@link IndexedGraph}, como un grafo compacto
+     * o uno fuera del heap, de modo que el recorrido se hace indexando arrays sin usar mapas ni enteros
+     * envueltos.
+     */
+    static LinkedList<Either<Integer, List<Integer>>> solve(IndexedGraph graph) {
+        return solveCompact(graph).toList();
+    }
+
+    /**
+     * Igual que {@link #solve(IndexedGraph)} pero devuelve el resultado en un {@link SolveResult}, con
+     * una componente por nodo.
+     * <p>
+     * Los colores y la pila se guardan en arrays creados por {@link IndexedGraph#newIntArray(int)}, asi
+     * que estan fuera del heap si el grafo lo esta. En el heap solo quedan los dos arrays del resultado.
+     */
+    static SolveResult solveCompact(IndexedGraph graph) {
+        int n = graph.getNumberOfNodes();
+        var colors = graph.newIntArray(n);
+        var stack = graph.newIntArray(n);
+        var nextEdge = graph.newIntArray(n);
+        // Se rellena desde el final, ya que cada nodo va antes que los que terminaron antes que el
+        var order = new int[n];
+        int first = n;
+
+        for (int node = 0; node < n; node++) {
+            if (colors.get(node) == WHITE)
+                first = dfsVisit(graph, node, colors, order, first, stack, nextEdge);
+        }
+
+        var offsets = new int[n + 1];
+        for (int i = 0; i <= n; i++)
+            offsets[i] = i;
+        return new SolveResult(order, offsets);
+    }
 
-        colors.put(node, Color.BLACK);
-        topologicalOrder.addFirst(new Either.Left<>(node));
+    /**
+     * Igual que {@link #dfsVisit(Graph, int, Map, LinkedList, int[], Iterator[])} pero sobre un
+     * {@link IndexedGraph}. Los nodos se identifican por su indice en <code>graph</code>, y sus valores
+     * se guardan en <code>topologicalOrder</code> delante de la posicion <code>first</code>.
+     *
+     * @param colors   Color de cada nodo, con el ordinal de {@link Color}.
+     * @param nextEdge Siguiente arista por recorrer de cada nodo que se esta visitando.
+     * @return Posicion del primer nodo de <code>topologicalOrder</code> tras la visita.
+     */
+    private static int dfsVisit(IndexedGraph graph,
+                                int node,
+                                IntArray colors,
+                                int[] topologicalOrder,
+                                int first,
+                                IntArray stack,
+                                IntArray nextEdge) {
+        int size = 0;
+        colors.set(node, GRAY);
+        nextEdge.set(node, graph.edgesStart(node));
+        stack.set(size++, node);
+
+        while (size > 0) {
+            int current = stack.get(size - 1);
+            int edge = nextEdge.get(current);
+            if (edge < graph.edgesEnd(current)) {
+                nextEdge.set(current, edge + 1);
+                int adj = graph.edgeTarget(edge);
+                int color = colors.get(adj);
+                if (color == WHITE) {
+                    colors.set(adj, GRAY);
+                    nextEdge.set(adj, graph.edgesStart(adj));
+                    stack.set(size++, adj);
+                } else if (color == GRAY) {
+                    throw new IllegalArgumentException("There's a loop, so there's no topological order");
+                }
+            } else {
+                size--;
+                colors.set(current, BLACK);
+                topologicalOrder[--first] = graph.label(current);
+            }
+        }
+        return first;
     }
 }
@@ -0,0 +1,17 @@
+package ucm.erikkarl.graph;
+
+import java.io.IOException;
+
+/**
+ * Receives the adjacent nodes of each node of a graph that is generated or read without keeping it
+ * whole in memory.
+ */
+@FunctionalInterface
+public interface AdjacencySink {
+    /**
+     * @param node      Node whose adjacent nodes are given.
+     * @param adjacents Adjacent nodes of <code>node</code>. The array may be reused after this call.
+     * @param count     Number of elements of <code>adjacents</code> that are used.
+     */
+    void accept(int node, int[] adjacents, int count) throws IOException;
+}
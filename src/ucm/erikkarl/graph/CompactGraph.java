@@ -0,0 +1,274 @@
+package ucm.erikkarl.graph;
+
+import ucm.erikkarl.jfr.TransposeEvent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable directed graph stored in compressed sparse row (CSR) form.
+ * <p>
+ * Nodes are identified internally by an index between <code>0</code> and
+ * <code>getNumberOfNodes() - 1</code>. The adjacent nodes of the node with index
+ * <code>i</code> are <code>targets[offsets[i]]</code> to <code>targets[offsets[i + 1] - 1]</code>.
+ * The original value of each node is kept in <code>labels</code>, and nodes follow the same
+ * order a {@link Graph} would iterate them in.
+ * <p>
+ * Algorithms that only read the graph can take any {@link IndexedGraph}, so they also work on an
+ * {@link OffHeapGraph}.
+ */
+public final class CompactGraph implements IndexedGraph {
+    /**
+     * Original value of each node.
+     */
+    private final int[] labels;
+    /**
+     * Position in <code>targets</code> where the adjacent nodes of each node start.
+     * Has one more element than the number of nodes.
+     */
+    private final int[] offsets;
+    /**
+     * Indices of the adjacent nodes of every node, one node after another.
+     */
+    private final int[] targets;
+    /**
+     * Same graph with all its edges reversed, built the first time it's needed. Its CSR arrays are
+     * the incoming edges of each node of this graph.
+     */
+    private volatile CompactGraph transpose;
+
+    private CompactGraph(int[] labels, int[] offsets, int[] targets) {
+        this.labels = labels;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Creates a graph directly from its CSR arrays, which are not copied. The caller must not
+     * modify them afterwards.
+     *
+     * @param labels  Original value of each node.
+     * @param offsets Position in <code>targets</code> where the adjacent nodes of each node start,
+     *                plus the number of edges at the end.
+     * @param targets Indices of the adjacent nodes of every node, one node after another.
+     */
+    public static CompactGraph of(int[] labels, int[] offsets, int[] targets) {
+        if (offsets.length != labels.length + 1 || offsets[labels.length] != targets.length)
+            throw new IllegalArgumentException("Offsets don't match the number of nodes and edges");
+        return new CompactGraph(labels, offsets, targets);
+    }
+
+    /**
+     * Creates a compact copy of <code>graph</code>. Nodes keep the order in which
+     * <code>graph</code> iterates them.
+     */
+    public static CompactGraph from(Graph<Integer> graph) {
+        int n = graph.getNumberOfNodes();
+        var indices = new HashMap<Integer, Integer>(Math.max(16, (int) (n / 0.75f) + 1));
+        var labels = new int[n];
+        var offsets = new int[n + 1];
+
+        int i = 0;
+        for (Map.Entry<Integer, Set<Integer>> entry : graph.adjacencies()) {
+            labels[i] = entry.getKey();
+            indices.put(entry.getKey(), i);
+            offsets[i + 1] = offsets[i] + entry.getValue().size();
+            i++;
+        }
+
+        var targets = new int[offsets[n]];
+        int e = 0;
+        for (Map.Entry<Integer, Set<Integer>> entry : graph.adjacencies()) {
+            for (Integer adj : entry.getValue())
+                targets[e++] = indices.get(adj);
+        }
+        return new CompactGraph(labels, offsets, targets);
+    }
+
+    public int getNumberOfNodes() {
+        return labels.length;
+    }
+
+    public int getNumberOfEdges() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the original value of the node with index <code>index</code>.
+     */
+    public int label(int index) {
+        return labels[index];
+    }
+
+    /**
+     * Position of the first edge leaving the node with index <code>index</code>.
+     */
+    public int edgesStart(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Position after the last edge leaving the node with index <code>index</code>.
+     */
+    public int edgesEnd(int index) {
+        return offsets[index + 1];
+    }
+
+    /**
+     * Index of the node the edge at position <code>edge</code> points to.
+     */
+    public int edgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    public int outDegree(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Number of edges that point to the node with index <code>index</code>.
+     */
+    public int inDegree(int index) {
+        return transpose().outDegree(index);
+    }
+
+    /**
+     * Returns a graph with the same nodes as this one and all its edges reversed. Nodes keep the
+     * same indices, so the adjacent nodes of a node in the transpose are the nodes with an edge to
+     * it in this graph.
+     * <p>
+     * The transpose is built the first time this method is called and kept afterwards, so
+     * algorithms that need the incoming edges of each node can call it every time without
+     * rebuilding it. The transpose of the transpose is this graph.
+     */
+    public CompactGraph transpose() {
+        var reversed = transpose;
+        if (reversed == null) {
+            reversed = buildTranspose();
+            reversed.transpose = this;
+            transpose = reversed;
+        }
+        return reversed;
+    }
+
+    private CompactGraph buildTranspose() {
+        var event = new TransposeEvent();
+        event.begin();
+        int n = labels.length;
+        var transposedOffsets = new int[n + 1];
+        for (int t : targets)
+            transposedOffsets[t + 1]++;
+        for (int i = 0; i < n; i++)
+            transposedOffsets[i + 1] += transposedOffsets[i];
+
+        var next = Arrays.copyOf(transposedOffsets, n);
+        var transposedTargets = new int[targets.length];
+        for (int i = 0; i < n; i++) {
+            for (int e = offsets[i]; e < offsets[i + 1]; e++)
+                transposedTargets[next[targets[e]]++] = i;
+        }
+        if (event.shouldCommit()) {
+            event.graphType = CompactGraph.class.getSimpleName();
+            event.nodes = n;
+            event.edges = targets.length;
+            event.commit();
+        }
+        return new CompactGraph(labels, transposedOffsets, transposedTargets);
+    }
+
+    /**
+     * Creates a {@link Graph} with the same nodes and edges, iterated in the same order.
+     */
+    public Graph<Integer> toGraph() {
+        return Graph.from(this);
+    }
+
+    /**
+     * Creates a graph from a list of edges given by the indices of their nodes. Edges keep the order
+     * in which they appear for each source node, and repeated edges are only added once, just like
+     * {@link Graph#addEdges(Object, java.util.List)} does. Runs in O(n + m) time.
+     *
+     * @param labels       Original value of each node. It is not copied.
+     * @param sources      Index of the source node of each edge.
+     * @param destinations Index of the destination node of each edge.
+     * @param edges        Number of edges, which may be less than the length of both arrays.
+     */
+    public static CompactGraph fromEdges(int[] labels, int[] sources, int[] destinations, int edges) {
+        int nodes = labels.length;
+        var offsets = new int[nodes + 1];
+        for (int e = 0; e < edges; e++)
+            offsets[sources[e] + 1]++;
+        for (int i = 0; i < nodes; i++)
+            offsets[i + 1] += offsets[i];
+
+        // Counting sort by source node; keeps the order in which edges were added
+        var next = Arrays.copyOf(offsets, nodes);
+        var sorted = new int[edges];
+        for (int e = 0; e < edges; e++)
+            sorted[next[sources[e]]++] = destinations[e];
+
+        // Removes repeated edges keeping the first occurrence
+        var lastSource = new int[nodes];
+        Arrays.fill(lastSource, -1);
+        var targets = new int[edges];
+        int size = 0;
+        for (int i = 0; i < nodes; i++) {
+            int start = offsets[i];
+            int end = offsets[i + 1];
+            offsets[i] = size;
+            for (int e = start; e < end; e++) {
+                int t = sorted[e];
+                if (lastSource[t] != i) {
+                    lastSource[t] = i;
+                    targets[size++] = t;
+                }
+            }
+        }
+        offsets[nodes] = size;
+
+        return new CompactGraph(labels, offsets, size == edges ? targets : Arrays.copyOf(targets, size));
+    }
+
+    /**
+     * Builds a {@link CompactGraph} from the adjacency lists read from a test file or any
+     * other source, with the same semantics as {@link Graph#addEdges(Object, java.util.List)}:
+     * nodes are added the first time they appear and repeated edges are ignored. Same as a
+     * {@link GraphBuilder}, which also accepts raw edge arrays and can build a {@link Graph}.
+     */
+    public static final class Builder {
+        private final GraphBuilder builder = new GraphBuilder();
+
+        /**
+         * Adds a node to the graph with no adjacent nodes.
+         *
+         * @param node Node to be added.
+         */
+        public Builder addNode(int node) {
+            builder.addNode(node);
+            return this;
+        }
+
+        /**
+         * Makes all the nodes in <code>adjacents</code> adjacent to <code>node</code>.
+         * Those nodes are added to the graph if they didn't exist yet.
+         */
+        public Builder addEdges(int node, int[] adjacents) {
+            return addEdges(node, adjacents, adjacents.length);
+        }
+
+        /**
+         * Same as {@link #addEdges(int, int[])} but only uses the first <code>count</code>
+         * elements of <code>adjacents</code>, so the same array can be reused between calls.
+         */
+        public Builder addEdges(int node, int[] adjacents, int count) {
+            builder.addEdges(node, adjacents, count);
+            return this;
+        }
+
+        public CompactGraph build() {
+            return builder.buildCompactGraph();
+        }
+    }
+}
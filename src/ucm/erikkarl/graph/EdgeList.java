@@ -0,0 +1,55 @@
+package ucm.erikkarl.graph;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of edges given by the indices of their nodes, used by {@link GraphGenerator}.
+ */
+final class EdgeList {
+    private int[] sources;
+    private int[] destinations;
+    private int size = 0;
+
+    EdgeList(int capacity) {
+        sources = new int[Math.max(capacity, 16)];
+        destinations = new int[sources.length];
+    }
+
+    void add(int source, int destination) {
+        if (size == sources.length) {
+            if (size == Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Too many edges");
+            int capacity = (int) Math.min(size * 2L, Integer.MAX_VALUE - 8);
+            sources = Arrays.copyOf(sources, capacity);
+            destinations = Arrays.copyOf(destinations, capacity);
+        }
+        sources[size] = source;
+        destinations[size] = destination;
+        size++;
+    }
+
+    void addAll(EdgeList other) {
+        for (int e = 0; e < other.size; e++)
+            add(other.sources[e], other.destinations[e]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int source(int edge) {
+        return sources[edge];
+    }
+
+    int destination(int edge) {
+        return destinations[edge];
+    }
+
+    int[] sources() {
+        return sources;
+    }
+
+    int[] destinations() {
+        return destinations;
+    }
+}
@@ -0,0 +1,129 @@
+package ucm.erikkarl.graph;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Erdos-Renyi G(n, p) generator: every possible edge between two different nodes is added with
+ * probability <code>p</code>, independently of the others.
+ * <p>
+ * Instead of tossing a coin for each of the n^2 possible edges, it draws the gap until the next added
+ * edge from a geometric distribution, so it runs in O(n + m) time.
+ * <p>
+ * Chunks are ranges of source nodes, so the graph can also be generated with
+ * {@link #generate(ForkJoinPool, AdjacencySink)} without ever keeping it whole in memory.
+ */
+public final class ErdosRenyiGenerator extends GraphGenerator {
+    private static final int NODES_PER_CHUNK = 1024;
+
+    private final double probability;
+
+    public ErdosRenyiGenerator(int nodes, double probability, long seed) {
+        super(nodes, seed);
+        if (!(probability >= 0 && probability <= 1))
+            throw new IllegalArgumentException("Probability must be between 0 and 1");
+        this.probability = probability;
+    }
+
+    @Override
+    protected int numberOfChunks() {
+        return (nodes + NODES_PER_CHUNK - 1) / NODES_PER_CHUNK;
+    }
+
+    @Override
+    protected long expectedEdges() {
+        return (long) (probability * nodes * (nodes - 1L));
+    }
+
+    /**
+     * Goes through the possible edges whose source is one of the nodes of the chunk.
+     */
+    @Override
+    protected void generateChunk(int chunk, SplittableRandom random, EdgeList edges) {
+        if (probability == 0)
+            return;
+        int firstNode = chunk * NODES_PER_CHUNK;
+        int lastNode = Math.min(firstNode + NODES_PER_CHUNK, nodes);
+        long pairs = (long) (lastNode - firstNode) * nodes;
+        double logOfFailure = Math.log1p(-probability);
+
+        long pair = -1;
+        while (true) {
+            if (probability == 1) {
+                pair++;
+            } else {
+                double skip = Math.floor(Math.log1p(-random.nextDouble()) / logOfFailure);
+                if (skip >= pairs - pair)
+                    return;
+                pair += 1 + (long) skip;
+            }
+            if (pair >= pairs)
+                return;
+            edges.add(firstNode + (int) (pair / nodes), (int) (pair % nodes));
+        }
+    }
+
+    /**
+     * Generates the graph node by node and gives the adjacent nodes of each node to <code>sink</code>,
+     * in the same order as {@link #createGraph()} would have them. Chunks are generated in parallel in
+     * <code>pool</code> a batch at a time, while the previous batch is given to <code>sink</code>, so only
+     * two batches of chunks are ever in memory.
+     *
+     * @throws IllegalStateException If {@link #acyclic()} or {@link #withPlantedComponents(int)} have
+     *                               been used, since they move edges between nodes.
+     */
+    public void generate(ForkJoinPool pool, AdjacencySink sink) throws IOException {
+        if (hasStructure())
+            throw new IllegalStateException("Graphs with a planted structure cannot be generated node by node");
+
+        int chunks = numberOfChunks();
+        int batchSize = Math.max(1, pool.getParallelism() * 2);
+        ForkJoinTask<EdgeList[]> next = chunks > 0
+                ? pool.submit(() -> generateChunks(0, Math.min(batchSize, chunks)))
+                : null;
+        var adjacents = new int[16];
+        try {
+            for (int first = 0; first < chunks; first += batchSize) {
+                var batch = next.join();
+                int nextFirst = first + batchSize;
+                next = nextFirst < chunks
+                        ? pool.submit(() -> generateChunks(nextFirst, Math.min(nextFirst + batchSize, chunks)))
+                        : null;
+
+                for (int i = 0; i < batch.length; i++) {
+                    adjacents = giveChunk(first + i, batch[i], sink, adjacents);
+                    batch[i] = null;
+                }
+            }
+        } finally {
+            if (next != null)
+                next.cancel(true);
+        }
+    }
+
+    /**
+     * Gives the adjacent nodes of every node of chunk <code>chunk</code> to <code>sink</code>.
+     *
+     * @return <code>adjacents</code>, or a bigger array if it didn't have enough space.
+     */
+    private int[] giveChunk(int chunk, EdgeList edges, AdjacencySink sink, int[] adjacents) throws IOException {
+        int firstNode = chunk * NODES_PER_CHUNK;
+        int lastNode = Math.min(firstNode + NODES_PER_CHUNK, nodes);
+        int edge = 0;
+        for (int node = firstNode; node < lastNode; node++) {
+            int count = 0;
+            for (; edge < edges.size() && edges.source(edge) == node; edge++) {
+                if (edges.destination(edge) == node)
+                    continue;
+                if (count == adjacents.length)
+                    adjacents = Arrays.copyOf(adjacents, count * 2);
+                adjacents[count++] = edges.destination(edge) + 1;
+            }
+            sink.accept(node + 1, adjacents, count);
+        }
+        return adjacents;
+    }
+}
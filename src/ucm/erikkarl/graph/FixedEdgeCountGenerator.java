@@ -0,0 +1,43 @@
+package ucm.erikkarl.graph;
+
+import java.util.SplittableRandom;
+
+/**
+ * Erdos-Renyi G(n, m) generator: draws <code>m</code> edges uniformly at random among all the possible
+ * edges between two different nodes. Repeated edges are only added once, so dense graphs may end up with
+ * slightly fewer than <code>m</code> edges.
+ */
+public final class FixedEdgeCountGenerator extends GraphGenerator {
+    static final int EDGES_PER_CHUNK = 1 << 16;
+
+    private final long edges;
+
+    public FixedEdgeCountGenerator(int nodes, long edges, long seed) {
+        super(nodes, seed);
+        if (edges < 0)
+            throw new IllegalArgumentException("Number of edges cannot be negative");
+        if (edges > 0 && nodes < 2)
+            throw new IllegalArgumentException("Edges need at least two nodes");
+        this.edges = edges;
+    }
+
+    @Override
+    protected int numberOfChunks() {
+        return (int) ((edges + EDGES_PER_CHUNK - 1) / EDGES_PER_CHUNK);
+    }
+
+    @Override
+    protected long expectedEdges() {
+        return edges;
+    }
+
+    @Override
+    protected void generateChunk(int chunk, SplittableRandom random, EdgeList edgeList) {
+        long count = Math.min(EDGES_PER_CHUNK, edges - (long) chunk * EDGES_PER_CHUNK);
+        for (long i = 0; i < count; i++) {
+            int from = random.nextInt(nodes);
+            int to = random.nextInt(nodes - 1);
+            edgeList.add(from, to < from ? to : to + 1);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package ucm.erikkarl.graph;
 
+import ucm.erikkarl.jfr.TransposeEvent;
+
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -13,9 +16,45 @@ public final class Graph<T> implements Iterable<Map.Entry<T, Set<T>>> {
      * Maps each node to a list of adjacent nodes.
      */
     private final Map<T, Set<T>> nodeToAdjacentNodes;
+    /**
+     * Whether nodes and edges can be added, which is false for transposes.
+     */
+    private final boolean modifiable;
+    /**
+     * Same graph with all its edges reversed. It's built the first time it's needed and
+     * discarded whenever this graph is modified.
+     */
+    private volatile Graph<T> transpose;
 
     public Graph() {
         this.nodeToAdjacentNodes = new LinkedHashMap<>();
+        this.modifiable = true;
+    }
+
+    private Graph(int expectedNodes, boolean modifiable) {
+        this.nodeToAdjacentNodes = new LinkedHashMap<>(Math.max(16, (int) (expectedNodes / 0.75f) + 1));
+        this.modifiable = modifiable;
+    }
+
+    /**
+     * Creates a graph with the same nodes and edges as <code>graph</code>, iterated in the same order.
+     * Since a {@link CompactGraph} has no repeated edges, they are added directly to sets created with
+     * their final size.
+     */
+    static Graph<Integer> from(CompactGraph graph) {
+        int n = graph.getNumberOfNodes();
+        var result = new Graph<Integer>(n, true);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Set<Integer>[] adjacents = new Set[n];
+        for (int i = 0; i < n; i++) {
+            adjacents[i] = new LinkedHashSet<>(Math.max(16, (int) (graph.outDegree(i) / 0.75f) + 1));
+            result.nodeToAdjacentNodes.put(graph.label(i), adjacents[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            for (int e = graph.edgesStart(i); e < graph.edgesEnd(i); e++)
+                adjacents[i].add(graph.label(graph.edgeTarget(e)));
+        }
+        return result;
     }
 
     public int getNumberOfNodes() {
@@ -24,8 +63,8 @@ public final class Graph<T> implements Iterable<Map.Entry<T, Set<T>>> {
 
     public int getNumberOfEdges() {
         int edges = 0;
-        for (Map.Entry<T, Set<T>> entry : this) {
-            edges += entry.getValue().size();
+        for (Set<T> adjacents : nodeToAdjacentNodes.values()) {
+            edges += adjacents.size();
         }
         return edges;
     }
@@ -34,10 +73,13 @@ public final class Graph<T> implements Iterable<Map.Entry<T, Set<T>>> {
      * Adds a node to the graph with no adjacent nodes.
      *
      * @param node Node to be added.
+     * @throws UnsupportedOperationException If this graph is the transpose of another one.
      */
     public final void addNode(T node) {
+        checkModifiable();
         if (!this.nodeToAdjacentNodes.containsKey(node)) {
             this.nodeToAdjacentNodes.put(node, new LinkedHashSet<>());
+            this.transpose = null;
         }
     }
 
@@ -48,28 +90,117 @@ public final class Graph<T> implements Iterable<Map.Entry<T, Set<T>>> {
      *
      * @param node      Node to be added.
      * @param adjacents List of adjacent nodes.
+     * @throws UnsupportedOperationException If this graph is the transpose of another one.
      */
     public final void addEdges(T node, List<T> adjacents) {
         this.addNode(node);
         adjacents.forEach(x -> nodeToAdjacentNodes.putIfAbsent(x, new LinkedHashSet<>()));
-        nodeToAdjacentNodes.get(node).addAll(adjacents);
+        if (nodeToAdjacentNodes.get(node).addAll(adjacents))
+            this.transpose = null;
     }
 
     /**
      * Returns a set of all the adjacent nodes to <code>node</code>.
      *
      * @param node Node whose adjacent nodes will be returned.
-     * @return Set of nodes adjacent to <code>node</code>.
+     * @return Unmodifiable view of the set of nodes adjacent to <code>node</code>.
      */
     public final Set<T> adjacentNodes(T node) {
         if (this.nodeToAdjacentNodes.containsKey(node)) {
-            return this.nodeToAdjacentNodes.get(node);
+            return Collections.unmodifiableSet(this.nodeToAdjacentNodes.get(node));
         } else {
             throw new NoSuchElementException("This node does not exist in this graph.");
         }
     }
 
+    /**
+     * Returns a graph with the same nodes as this one and all its edges reversed, so the adjacent
+     * nodes of a node in the transpose are the nodes with an edge to it in this graph. Adjacent
+     * nodes keep the order in which this graph iterates the edges.
+     * <p>
+     * The transpose is built the first time this method is called and kept until this graph is
+     * modified, so algorithms that need the incoming edges of each node can call it every time
+     * without rebuilding it. The transpose can't be modified, so it never gets out of date.
+     */
+    public Graph<T> transpose() {
+        var reversed = transpose;
+        if (reversed == null) {
+            reversed = buildTranspose();
+            transpose = reversed;
+        }
+        return reversed;
+    }
+
+    private Graph<T> buildTranspose() {
+        var event = new TransposeEvent();
+        event.begin();
+        var reversed = new Graph<T>(nodeToAdjacentNodes.size(), false);
+        for (T node : nodeToAdjacentNodes.keySet())
+            reversed.nodeToAdjacentNodes.put(node, new LinkedHashSet<>());
+
+        int edges = 0;
+        for (Map.Entry<T, Set<T>> entry : nodeToAdjacentNodes.entrySet()) {
+            for (T adj : entry.getValue())
+                reversed.nodeToAdjacentNodes.get(adj).add(entry.getKey());
+            edges += entry.getValue().size();
+        }
+        if (event.shouldCommit()) {
+            event.graphType = Graph.class.getSimpleName();
+            event.nodes = nodeToAdjacentNodes.size();
+            event.edges = edges;
+            event.commit();
+        }
+        return reversed;
+    }
+
+    /**
+     * Returns an iterator over each node and an unmodifiable view of its adjacent nodes.
+     */
     public Iterator<Map.Entry<T, Set<T>>> iterator() {
-        return nodeToAdjacentNodes.entrySet().iterator();
+        var entries = nodeToAdjacentNodes.entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Map.Entry<T, Set<T>> next() {
+                var entry = entries.next();
+                return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(),
+                        Collections.unmodifiableSet(entry.getValue()));
+            }
+        };
+    }
+
+    /**
+     * Gives each node of <code>graph</code> and its adjacent nodes to <code>sink</code>, in the same
+     * order as {@link #iterator()}. Unlike the iterator, it doesn't create an entry and a view for each
+     * node: the adjacent nodes are copied into an array that is reused for all of them.
+     */
+    public static void forEachAdjacency(Graph<Integer> graph, AdjacencySink sink) throws IOException {
+        var adjacents = new int[16];
+        for (Map.Entry<Integer, Set<Integer>> entry : graph.adjacencies()) {
+            var adjacentNodes = entry.getValue();
+            if (adjacentNodes.size() > adjacents.length)
+                adjacents = new int[Math.max(adjacentNodes.size(), adjacents.length * 2)];
+            int count = 0;
+            for (Integer adj : adjacentNodes)
+                adjacents[count++] = adj;
+            sink.accept(entry.getKey(), adjacents, count);
+        }
+    }
+
+    /**
+     * Returns each node with the set of its adjacent nodes, in the same order as {@link #iterator()}
+     * but without creating a view for each node. Neither the entries nor the sets can be modified.
+     */
+    Set<Map.Entry<T, Set<T>>> adjacencies() {
+        return nodeToAdjacentNodes.entrySet();
+    }
+
+    private void checkModifiable() {
+        if (!modifiable)
+            throw new UnsupportedOperationException("The transpose of a graph can't be modified");
     }
 }
@@ -0,0 +1,213 @@
+package ucm.erikkarl.graph;
+
+import java.util.Arrays;
+
+/**
+ * Builds a graph from a list of edges given by the values of their nodes, either one by one, as
+ * raw arrays or as the adjacency lists of an {@link AdjacencySink}. It has the same semantics as
+ * {@link Graph#addEdges(Object, java.util.List)}: nodes are added the first time they appear, in that
+ * order, and repeated edges are only kept the first time they are added.
+ * <p>
+ * Unlike {@link Graph}, it doesn't keep a set per node while edges are added. Node values are mapped
+ * to indices with an open addressing table of <code>int</code>s and edges are appended to two
+ * <code>int</code> arrays, so adding an edge allocates nothing unless the arrays have to grow. Repeated
+ * edges are removed once, when the graph is built, by {@link CompactGraph#fromEdges}: a counting sort
+ * by source node followed by a linear scan. Both steps take O(n + m) time.
+ * <p>
+ * The builder can still be used after building a graph, and later graphs include the edges added
+ * before.
+ */
+public final class GraphBuilder implements AdjacencySink {
+    private static final int EMPTY = 0;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+    /**
+     * Most nodes the table can hold while staying at most half full, so lookups always reach an
+     * empty slot.
+     */
+    private static final int MAX_NODES = MAX_TABLE_SIZE / 2;
+
+    /**
+     * Value of each node, in the order in which they were added.
+     */
+    private int[] labels;
+    private int nodes = 0;
+    /**
+     * Open addressing hash table with the index plus one of each node, or {@link #EMPTY}. Its
+     * length is a power of two.
+     */
+    private int[] table;
+    private int[] sources;
+    private int[] destinations;
+    private int edges = 0;
+
+    public GraphBuilder() {
+        this(16, 16);
+    }
+
+    /**
+     * @param expectedNodes Number of nodes the graph is expected to have, so arrays don't have to grow.
+     * @param expectedEdges Number of edges the graph is expected to have, including repeated ones.
+     */
+    public GraphBuilder(int expectedNodes, int expectedEdges) {
+        if (expectedNodes < 0 || expectedEdges < 0)
+            throw new IllegalArgumentException("Expected sizes cannot be negative");
+        labels = new int[Math.min(Math.max(expectedNodes, 16), MAX_NODES)];
+        table = new int[tableSizeFor(labels.length)];
+        sources = new int[Math.max(expectedEdges, 16)];
+        destinations = new int[sources.length];
+    }
+
+    public int getNumberOfNodes() {
+        return nodes;
+    }
+
+    /**
+     * Number of edges added so far, counting repeated ones.
+     */
+    public int getNumberOfEdges() {
+        return edges;
+    }
+
+    /**
+     * Adds a node to the graph with no adjacent nodes.
+     *
+     * @param node Node to be added.
+     */
+    public GraphBuilder addNode(int node) {
+        indexOf(node);
+        return this;
+    }
+
+    /**
+     * Adds an edge from <code>source</code> to <code>destination</code>. Both nodes are added to the
+     * graph if they didn't exist yet.
+     */
+    public GraphBuilder addEdge(int source, int destination) {
+        int src = indexOf(source);
+        int dst = indexOf(destination);
+        ensureEdgeCapacity(1);
+        sources[edges] = src;
+        destinations[edges] = dst;
+        edges++;
+        return this;
+    }
+
+    /**
+     * Makes the first <code>count</code> nodes of <code>adjacents</code> adjacent to <code>node</code>.
+     * Those nodes are added to the graph if they didn't exist yet.
+     */
+    public GraphBuilder addEdges(int node, int[] adjacents, int count) {
+        int src = indexOf(node);
+        ensureEdgeCapacity(count);
+        for (int i = 0; i < count; i++) {
+            sources[edges] = src;
+            destinations[edges] = indexOf(adjacents[i]);
+            edges++;
+        }
+        return this;
+    }
+
+    /**
+     * Adds the first <code>count</code> edges of the arrays, going from <code>sourceNodes[i]</code>
+     * to <code>destinationNodes[i]</code>.
+     */
+    public GraphBuilder addEdges(int[] sourceNodes, int[] destinationNodes, int count) {
+        if (count > sourceNodes.length || count > destinationNodes.length)
+            throw new IllegalArgumentException("There are less than " + count + " edges");
+        ensureEdgeCapacity(count);
+        for (int i = 0; i < count; i++) {
+            sources[edges] = indexOf(sourceNodes[i]);
+            destinations[edges] = indexOf(destinationNodes[i]);
+            edges++;
+        }
+        return this;
+    }
+
+    /**
+     * Same as {@link #addEdges(int, int[], int)}, so graphs can be streamed into the builder.
+     */
+    @Override
+    public void accept(int node, int[] adjacents, int count) {
+        addEdges(node, adjacents, count);
+    }
+
+    /**
+     * Builds a {@link CompactGraph} with the nodes and edges added so far.
+     */
+    public CompactGraph buildCompactGraph() {
+        return CompactGraph.fromEdges(Arrays.copyOf(labels, nodes), sources, destinations, edges);
+    }
+
+    /**
+     * Builds a {@link Graph} with the nodes and edges added so far. Its sets of adjacent nodes are
+     * created with their final size.
+     */
+    public Graph<Integer> buildGraph() {
+        return Graph.from(buildCompactGraph());
+    }
+
+    /**
+     * Returns the index of <code>node</code>, adding it if it didn't exist yet.
+     */
+    private int indexOf(int node) {
+        int mask = table.length - 1;
+        int slot = hash(node) & mask;
+        while (table[slot] != EMPTY) {
+            int index = table[slot] - 1;
+            if (labels[index] == node)
+                return index;
+            slot = (slot + 1) & mask;
+        }
+
+        if (nodes == labels.length) {
+            if (nodes == MAX_NODES)
+                throw new IllegalStateException("Too many nodes");
+            labels = Arrays.copyOf(labels, Math.min(nodes * 2, MAX_NODES));
+        }
+        labels[nodes] = node;
+        table[slot] = nodes + 1;
+        nodes++;
+        // Keeps the table at most half full
+        if (nodes > table.length / 2 && table.length < MAX_TABLE_SIZE)
+            rehash(table.length * 2);
+        return nodes - 1;
+    }
+
+    private void rehash(int size) {
+        table = new int[size];
+        int mask = size - 1;
+        for (int i = 0; i < nodes; i++) {
+            int slot = hash(labels[i]) & mask;
+            while (table[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+            table[slot] = i + 1;
+        }
+    }
+
+    private void ensureEdgeCapacity(int count) {
+        if ((long) edges + count <= sources.length)
+            return;
+        if ((long) edges + count > MAX_ARRAY_SIZE)
+            throw new IllegalStateException("Too many edges");
+        int capacity = (int) Math.min(Math.max(edges + (long) count, sources.length * 2L), MAX_ARRAY_SIZE);
+        sources = Arrays.copyOf(sources, capacity);
+        destinations = Arrays.copyOf(destinations, capacity);
+    }
+
+    /**
+     * Power of two with at least twice as many slots as <code>nodes</code>.
+     */
+    private static int tableSizeFor(int nodes) {
+        int size = Integer.highestOneBit(Math.max(nodes, 8) - 1) << 2;
+        return size > 0 && size <= MAX_TABLE_SIZE ? size : MAX_TABLE_SIZE;
+    }
+
+    /**
+     * Mixes the bits of <code>node</code> so that consecutive values don't fill consecutive slots.
+     */
+    private static int hash(int node) {
+        int h = node * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,138 @@
+package ucm.erikkarl.graph;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 128 bit hash of the structure of a graph: its nodes, in order, and the adjacent nodes of each one,
+ * also in order. Two graphs that would be iterated in exactly the same way have the same fingerprint,
+ * and two different graphs have the same fingerprint with negligible probability, so it can be used
+ * as a key to find results computed for an identical graph.
+ * <p>
+ * It is computed in a single pass with a {@link Hasher}, which follows MurmurHash3's 128 bit mixing,
+ * so it can also be computed while a graph is being read or generated.
+ */
+public final class GraphFingerprint {
+    private final long high;
+    private final long low;
+
+    public GraphFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static GraphFingerprint of(Graph<Integer> graph) {
+        var hasher = new Hasher();
+        for (Map.Entry<Integer, Set<Integer>> entry : graph.adjacencies()) {
+            hasher.addNode(entry.getKey(), entry.getValue().size());
+            for (Integer adj : entry.getValue())
+                hasher.addAdjacent(adj);
+        }
+        return hasher.fingerprint();
+    }
+
+    public static GraphFingerprint of(CompactGraph graph) {
+        var hasher = new Hasher();
+        for (int i = 0; i < graph.getNumberOfNodes(); i++) {
+            hasher.addNode(graph.label(i), graph.outDegree(i));
+            for (int e = graph.edgesStart(i); e < graph.edgesEnd(i); e++)
+                hasher.addAdjacent(graph.label(graph.edgeTarget(e)));
+        }
+        return hasher.fingerprint();
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof GraphFingerprint))
+            return false;
+        var other = (GraphFingerprint) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) low;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    /**
+     * Computes a fingerprint node by node. Each node has to be added with its number of adjacent
+     * nodes, followed by those adjacent nodes.
+     */
+    public static final class Hasher implements AdjacencySink {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private long h1 = 0;
+        private long h2 = 0;
+        private long nodes = 0;
+        private long edges = 0;
+
+        public void addNode(int node, int degree) {
+            nodes++;
+            add(node);
+            add(degree);
+        }
+
+        public void addAdjacent(int node) {
+            edges++;
+            add(node);
+        }
+
+        @Override
+        public void accept(int node, int[] adjacents, int count) {
+            addNode(node, count);
+            for (int i = 0; i < count; i++)
+                addAdjacent(adjacents[i]);
+        }
+
+        private void add(int value) {
+            long k1 = value * C1;
+            k1 = Long.rotateLeft(k1, 31) * C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            long k2 = value * C2;
+            k2 = Long.rotateLeft(k2, 33) * C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        public GraphFingerprint fingerprint() {
+            long a = h1 ^ nodes;
+            long b = h2 ^ edges;
+            a += b;
+            b += a;
+            a = mix(a);
+            b = mix(b);
+            a += b;
+            b += a;
+            return new GraphFingerprint(a, b);
+        }
+
+        private static long mix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package ucm.erikkarl.graph;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Base class for seeded random graph generators that run in O(n + m) time.
+ * <p>
+ * Nodes are the numbers <code>1..n</code>, like in {@link RandomGraphGenerator}. The work is split
+ * into a fixed number of chunks, and each chunk gets its own {@link SplittableRandom} whose seed only
+ * depends on the generator's seed and the chunk's index. That way the same seed always gives the
+ * same graph, and generating the chunks in parallel gives exactly the same graph as generating them
+ * one after another.
+ * <p>
+ * Self loops and repeated edges are dropped. By default the generated edges are kept as they are,
+ * but the graph can also be made acyclic or given a known set of strongly connected components:
+ * <ul>
+ *     <li>{@link #acyclic()} points every edge from the smaller node to the larger one.</li>
+ *     <li>{@link #withPlantedComponents(int)} splits the nodes into blocks of consecutive nodes,
+ *     points every edge between two blocks from the smaller block to the larger one and closes a
+ *     cycle through the nodes of each block, so the blocks are exactly the strongly connected
+ *     components of the graph.</li>
+ * </ul>
+ */
+public abstract class GraphGenerator {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    protected final int nodes;
+    protected final long seed;
+    private boolean acyclic = false;
+    private int componentSize = 0;
+
+    protected GraphGenerator(int nodes, long seed) {
+        if (nodes < 0)
+            throw new IllegalArgumentException("Number of nodes cannot be negative");
+        this.nodes = nodes;
+        this.seed = seed;
+    }
+
+    /**
+     * Makes the generated graphs acyclic by pointing every edge from the smaller node to the larger one.
+     */
+    public GraphGenerator acyclic() {
+        this.acyclic = true;
+        this.componentSize = 0;
+        return this;
+    }
+
+    /**
+     * Makes the generated graphs have blocks of <code>size</code> consecutive nodes as their
+     * strongly connected components. The last block may be smaller.
+     */
+    public GraphGenerator withPlantedComponents(int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("Components must have at least one node");
+        this.componentSize = size;
+        this.acyclic = false;
+        return this;
+    }
+
+    /**
+     * Number of chunks the work is split into. It must only depend on the generator's parameters.
+     */
+    protected abstract int numberOfChunks();
+
+    /**
+     * Generates the edges of chunk <code>chunk</code>, as indices between <code>0</code> and
+     * <code>nodes - 1</code>, using only <code>random</code> as the source of randomness.
+     */
+    protected abstract void generateChunk(int chunk, SplittableRandom random, EdgeList edges);
+
+    /**
+     * Expected number of edges, used to size the edge list before generating.
+     */
+    protected abstract long expectedEdges();
+
+    public Graph<Integer> createGraph() {
+        return createCompactGraph().toGraph();
+    }
+
+    public CompactGraph createCompactGraph() {
+        var edges = new EdgeList((int) Math.min(expectedEdges(), 1 << 24));
+        for (int chunk = 0; chunk < numberOfChunks(); chunk++)
+            generateChunk(chunk, randomFor(chunk), edges);
+        return toCompactGraph(edges);
+    }
+
+    /**
+     * Same as {@link #createCompactGraph()}, but generates the chunks in parallel using the threads
+     * of <code>pool</code>. The result is exactly the same.
+     */
+    public CompactGraph createCompactGraph(ForkJoinPool pool) {
+        var parts = pool.submit(() -> generateChunks(0, numberOfChunks())).join();
+
+        long total = 0;
+        for (EdgeList part : parts)
+            total += part.size();
+        var edges = new EdgeList((int) Math.min(total, Integer.MAX_VALUE - 8));
+        for (int i = 0; i < parts.length; i++) {
+            edges.addAll(parts[i]);
+            parts[i] = null;
+        }
+        return toCompactGraph(edges);
+    }
+
+    /**
+     * Generates the chunks from <code>first</code> to <code>last - 1</code> in parallel. Must be
+     * called from a thread of the pool the chunks should be generated in.
+     */
+    EdgeList[] generateChunks(int first, int last) {
+        int chunks = numberOfChunks();
+        long edgesPerChunk = chunks > 0 ? expectedEdges() / chunks : 0;
+        return IntStream.range(first, last).parallel()
+                .mapToObj(chunk -> {
+                    var part = new EdgeList((int) Math.min(edgesPerChunk + edgesPerChunk / 8, 1 << 24));
+                    generateChunk(chunk, randomFor(chunk), part);
+                    return part;
+                })
+                .toArray(EdgeList[]::new);
+    }
+
+    /**
+     * Whether {@link #acyclic()} or {@link #withPlantedComponents(int)} have been used.
+     */
+    boolean hasStructure() {
+        return acyclic || componentSize > 0;
+    }
+
+    private SplittableRandom randomFor(int chunk) {
+        return new SplittableRandom(mix(seed, chunk));
+    }
+
+    /**
+     * Turns the generated edges into a graph, applying the requested structure.
+     */
+    private CompactGraph toCompactGraph(EdgeList generated) {
+        var edges = new EdgeList(generated.size() + (componentSize > 1 ? nodes : 0));
+        for (int e = 0; e < generated.size(); e++) {
+            int from = generated.source(e);
+            int to = generated.destination(e);
+            if (from == to)
+                continue;
+            if ((acyclic && from > to) || (componentSize > 0 && from / componentSize > to / componentSize)) {
+                int tmp = from;
+                from = to;
+                to = tmp;
+            }
+            edges.add(from, to);
+        }
+        if (componentSize > 1) {
+            for (int start = 0; start < nodes; start += componentSize) {
+                int end = Math.min(start + componentSize, nodes);
+                for (int i = start; i < end - 1; i++)
+                    edges.add(i, i + 1);
+                if (end - start > 1)
+                    edges.add(end - 1, start);
+            }
+        }
+
+        var labels = new int[nodes];
+        for (int i = 0; i < nodes; i++)
+            labels[i] = i + 1;
+        return CompactGraph.fromEdges(labels, edges.sources(), edges.destinations(), edges.size());
+    }
+
+    /**
+     * Mixes <code>seed</code> and <code>index</code> into a well distributed 64 bit number, using the
+     * same finalizer as {@link SplittableRandom}.
+     */
+    static long mix(long seed, long index) {
+        long z = seed + (index + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
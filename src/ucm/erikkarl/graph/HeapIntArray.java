@@ -0,0 +1,34 @@
+package ucm.erikkarl.graph;
+
+import java.util.Arrays;
+
+/**
+ * {@link IntArray} backed by an <code>int[]</code>.
+ */
+final class HeapIntArray implements IntArray {
+    private final int[] values;
+
+    HeapIntArray(int length) {
+        this.values = new int[length];
+    }
+
+    @Override
+    public int length() {
+        return values.length;
+    }
+
+    @Override
+    public int get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public void set(int index, int value) {
+        values[index] = value;
+    }
+
+    @Override
+    public void fill(int value) {
+        Arrays.fill(values, value);
+    }
+}
@@ -0,0 +1,54 @@
+package ucm.erikkarl.graph;
+
+/**
+ * Read-only directed graph whose nodes are identified by an index between <code>0</code> and
+ * <code>getNumberOfNodes() - 1</code> and whose edges are stored one node after another, in
+ * compressed sparse row (CSR) form. The adjacent nodes of the node with index <code>i</code> are the
+ * targets of the edges from <code>edgesStart(i)</code> to <code>edgesEnd(i) - 1</code>.
+ * <p>
+ * Algorithms written against this interface work the same on a {@link CompactGraph} on the Java
+ * heap and on an {@link OffHeapGraph}. They should allocate the arrays they need to traverse the
+ * graph with {@link #newIntArray(int)}, so that those arrays live wherever the graph does.
+ */
+public interface IndexedGraph {
+    int getNumberOfNodes();
+
+    int getNumberOfEdges();
+
+    /**
+     * Returns the original value of the node with index <code>index</code>.
+     */
+    int label(int index);
+
+    /**
+     * Position of the first edge leaving the node with index <code>index</code>.
+     */
+    int edgesStart(int index);
+
+    /**
+     * Position after the last edge leaving the node with index <code>index</code>.
+     */
+    int edgesEnd(int index);
+
+    /**
+     * Index of the node the edge at position <code>edge</code> points to.
+     */
+    int edgeTarget(int edge);
+
+    default int outDegree(int index) {
+        return edgesEnd(index) - edgesStart(index);
+    }
+
+    /**
+     * Returns a graph with the same nodes and all the edges reversed. Nodes keep the same indices.
+     */
+    IndexedGraph transpose();
+
+    /**
+     * Creates an array of <code>length</code> zeros stored like this graph, for the state of an
+     * algorithm that traverses it.
+     */
+    default IntArray newIntArray(int length) {
+        return IntArray.onHeap(length);
+    }
+}
@@ -0,0 +1,34 @@
+package ucm.erikkarl.graph;
+
+/**
+ * Fixed-size array of <code>int</code>s that may be stored on the Java heap or outside of it.
+ */
+public interface IntArray {
+    int length();
+
+    int get(int index);
+
+    void set(int index, int value);
+
+    /**
+     * Sets every element to <code>value</code>.
+     */
+    default void fill(int value) {
+        for (int i = 0; i < length(); i++)
+            set(i, value);
+    }
+
+    /**
+     * Creates an array of <code>length</code> zeros on the Java heap.
+     */
+    static IntArray onHeap(int length) {
+        return new HeapIntArray(length);
+    }
+
+    /**
+     * Creates an array of <code>length</code> zeros in direct memory, outside of the Java heap.
+     */
+    static IntArray offHeap(int length) {
+        return OffHeapIntArray.allocate(length);
+    }
+}
@@ -0,0 +1,393 @@
+package ucm.erikkarl.graph;
+
+import ucm.erikkarl.jfr.TransposeEvent;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Immutable directed graph stored in compressed sparse row (CSR) form outside of the Java heap, so
+ * it can be larger than the heap and the garbage collector never has to scan it. It has the same
+ * layout as a {@link CompactGraph}, but its arrays are {@link IntArray}s in direct memory or in a
+ * mapped file, and so are the arrays created by {@link #newIntArray(int)} for the algorithms that
+ * traverse it.
+ * <p>
+ * Graphs can be copied from any other {@link IndexedGraph}, built node by node with a
+ * {@link Builder}, written to a file with {@link #write(File)} and mapped from that file with
+ * {@link #map(File)}. Graphs mapped from a file or built into one are paged in and out by the
+ * operating system, so they can even be larger than the physical memory. Direct memory is limited by
+ * <code>-XX:MaxDirectMemorySize</code>, which is the maximum heap size by default.
+ * <p>
+ * Positions of edges are <code>int</code>s like in a {@link CompactGraph}, so a graph can have up to
+ * {@link Integer#MAX_VALUE} edges.
+ * <p>
+ * A graph file starts with four little endian <code>int</code>s: a magic number, the version of the
+ * format, the number of nodes and the number of edges. They are followed by the labels, the offsets
+ * and the targets of the graph, also as little endian <code>int</code>s.
+ */
+public final class OffHeapGraph implements IndexedGraph {
+    private static final int MAGIC = 0x4D41524F;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    private final int nodes;
+    private final int edges;
+    /**
+     * Original value of each node.
+     */
+    private final OffHeapIntArray labels;
+    /**
+     * Position in <code>targets</code> where the adjacent nodes of each node start.
+     * Has one more element than the number of nodes.
+     */
+    private final OffHeapIntArray offsets;
+    /**
+     * Indices of the adjacent nodes of every node, one node after another.
+     */
+    private final OffHeapIntArray targets;
+    /**
+     * Same graph with all its edges reversed, built in direct memory the first time it's needed.
+     */
+    private volatile OffHeapGraph transpose;
+
+    private OffHeapGraph(int nodes, int edges, OffHeapIntArray labels, OffHeapIntArray offsets,
+                         OffHeapIntArray targets) {
+        this.nodes = nodes;
+        this.edges = edges;
+        this.labels = labels;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Copies <code>graph</code> into direct memory. Nodes keep the same indices.
+     */
+    public static OffHeapGraph copyOf(IndexedGraph graph) {
+        int n = graph.getNumberOfNodes();
+        int m = graph.getNumberOfEdges();
+        var labels = OffHeapIntArray.allocate(n);
+        var offsets = OffHeapIntArray.allocate(n + 1);
+        var targets = OffHeapIntArray.allocate(m);
+        int e = 0;
+        for (int i = 0; i < n; i++) {
+            labels.set(i, graph.label(i));
+            offsets.set(i, e);
+            for (int edge = graph.edgesStart(i); edge < graph.edgesEnd(i); edge++)
+                targets.set(e++, graph.edgeTarget(edge));
+        }
+        offsets.set(n, e);
+        return new OffHeapGraph(n, m, labels, offsets, targets);
+    }
+
+    /**
+     * Maps a graph written by {@link #write(File)} or built by a {@link Builder} into a file. Nothing
+     * is read until the graph is traversed, and the file must not be modified while it's mapped.
+     */
+    public static OffHeapGraph map(File file) throws IOException {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException("File " + file + " is too short to be a graph");
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("File " + file + " is not a graph file");
+            int n = header.getInt();
+            int m = header.getInt();
+            if (n < 0 || m < 0 || n == Integer.MAX_VALUE
+                    || channel.size() < HEADER_BYTES + (2L * n + 1 + m) * Integer.BYTES)
+                throw new IOException("File " + file + " is corrupted");
+
+            var mode = FileChannel.MapMode.READ_ONLY;
+            long position = HEADER_BYTES;
+            var labels = OffHeapIntArray.map(channel, mode, position, n);
+            position += (long) n * Integer.BYTES;
+            var offsets = OffHeapIntArray.map(channel, mode, position, n + 1);
+            position += (n + 1L) * Integer.BYTES;
+            var targets = OffHeapIntArray.map(channel, mode, position, m);
+            if (offsets.get(n) != m)
+                throw new IOException("File " + file + " is corrupted");
+            return new OffHeapGraph(n, m, labels, offsets, targets);
+        }
+    }
+
+    /**
+     * Writes this graph to <code>file</code>, replacing its contents, so it can be mapped later with
+     * {@link #map(File)}.
+     */
+    public void write(File file) throws IOException {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(channel, nodes, edges);
+            long position = HEADER_BYTES;
+            labels.writeTo(channel, position, nodes);
+            position += (long) nodes * Integer.BYTES;
+            offsets.writeTo(channel, position, nodes + 1);
+            position += (nodes + 1L) * Integer.BYTES;
+            targets.writeTo(channel, position, edges);
+        }
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return nodes;
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+        return edges;
+    }
+
+    @Override
+    public int label(int index) {
+        return labels.get(index);
+    }
+
+    @Override
+    public int edgesStart(int index) {
+        return offsets.get(index);
+    }
+
+    @Override
+    public int edgesEnd(int index) {
+        return offsets.get(index + 1);
+    }
+
+    @Override
+    public int edgeTarget(int edge) {
+        return targets.get(edge);
+    }
+
+    /**
+     * Returns a graph with the same nodes as this one and all its edges reversed, built in direct
+     * memory the first time this method is called and kept afterwards. It shares the labels of this
+     * graph, and the transpose of the transpose is this graph.
+     */
+    @Override
+    public OffHeapGraph transpose() {
+        var reversed = transpose;
+        if (reversed == null) {
+            reversed = buildTranspose();
+            reversed.transpose = this;
+            transpose = reversed;
+        }
+        return reversed;
+    }
+
+    private OffHeapGraph buildTranspose() {
+        var event = new TransposeEvent();
+        event.begin();
+        var transposedOffsets = OffHeapIntArray.allocate(nodes + 1);
+        for (int e = 0; e < edges; e++) {
+            int t = targets.get(e) + 1;
+            transposedOffsets.set(t, transposedOffsets.get(t) + 1);
+        }
+        for (int i = 0; i < nodes; i++)
+            transposedOffsets.set(i + 1, transposedOffsets.get(i + 1) + transposedOffsets.get(i));
+
+        var next = OffHeapIntArray.allocate(nodes);
+        for (int i = 0; i < nodes; i++)
+            next.set(i, transposedOffsets.get(i));
+        var transposedTargets = OffHeapIntArray.allocate(edges);
+        for (int i = 0; i < nodes; i++) {
+            for (int e = offsets.get(i); e < offsets.get(i + 1); e++) {
+                int t = targets.get(e);
+                int position = next.get(t);
+                transposedTargets.set(position, i);
+                next.set(t, position + 1);
+            }
+        }
+        if (event.shouldCommit()) {
+            event.graphType = OffHeapGraph.class.getSimpleName();
+            event.nodes = nodes;
+            event.edges = edges;
+            event.commit();
+        }
+        return new OffHeapGraph(nodes, edges, labels, transposedOffsets, transposedTargets);
+    }
+
+    /**
+     * Creates an array in direct memory, so the state of the algorithms that traverse this graph
+     * doesn't grow the heap either.
+     */
+    @Override
+    public IntArray newIntArray(int length) {
+        return IntArray.offHeap(length);
+    }
+
+    private static void writeHeader(FileChannel channel, int nodes, int edges) throws IOException {
+        var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putInt(VERSION).putInt(nodes).putInt(edges).flip();
+        long position = 0;
+        while (header.hasRemaining())
+            position += channel.write(header, position);
+    }
+
+    /**
+     * Builds an {@link OffHeapGraph} node by node, in the order of their indices, without keeping
+     * anything on the heap. Adjacent nodes are given by their indices, so they must be known in
+     * advance, for example when nodes are numbered consecutively. Unlike {@link GraphBuilder}, it
+     * doesn't remove repeated edges.
+     * <p>
+     * The graph can be built in direct memory or straight into a file, which is mapped when the
+     * graph is built. When building into a file, edges go through a small buffer that is appended to
+     * the file whenever it fills up. A builder that writes into a file keeps it open until the graph
+     * is built or the builder is closed, so it should be created in a try-with-resources statement.
+     */
+    public static final class Builder implements Closeable {
+        private static final int BUFFER_INTS = 1 << 14;
+
+        private final int nodes;
+        private final OffHeapIntArray labels;
+        private final OffHeapIntArray offsets;
+        /**
+         * File the graph is built into, or <code>null</code> if it's built in direct memory.
+         */
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        /**
+         * Targets added so far when building in direct memory. Grows as needed.
+         */
+        private OffHeapIntArray targets;
+        private int edges = 0;
+        private int added = 0;
+        /**
+         * Whether the graph has been built or the builder closed, so it can't be used anymore.
+         */
+        private boolean built = false;
+
+        /**
+         * Builds a graph of <code>nodes</code> nodes in direct memory.
+         */
+        public Builder(int nodes) {
+            checkNodes(nodes);
+            this.nodes = nodes;
+            this.labels = OffHeapIntArray.allocate(nodes);
+            this.offsets = OffHeapIntArray.allocate(nodes + 1);
+            this.channel = null;
+            this.buffer = null;
+            this.targets = OffHeapIntArray.allocate(Math.max(16, Math.min(nodes, OffHeapIntArray.CHUNK_SIZE)));
+        }
+
+        /**
+         * Builds a graph of <code>nodes</code> nodes into <code>file</code>, replacing its contents.
+         * The graph can be mapped again later with {@link #map(File)}.
+         */
+        public Builder(int nodes, File file) throws IOException {
+            checkNodes(nodes);
+            this.nodes = nodes;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                var mode = FileChannel.MapMode.READ_WRITE;
+                this.labels = OffHeapIntArray.map(channel, mode, HEADER_BYTES, nodes);
+                this.offsets = OffHeapIntArray.map(channel, mode, HEADER_BYTES + (long) nodes * Integer.BYTES,
+                        nodes + 1);
+                this.buffer = ByteBuffer.allocateDirect(BUFFER_INTS * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                channel.close();
+                throw e;
+            }
+            this.targets = null;
+        }
+
+        /**
+         * Adds the node with the next index, whose value is <code>label</code>, and makes the nodes
+         * whose indices are the first <code>count</code> elements of <code>adjacents</code> adjacent
+         * to it.
+         */
+        public Builder addNode(int label, int[] adjacents, int count) throws IOException {
+            if (built || added == nodes)
+                throw new IllegalStateException("All " + nodes + " nodes have already been added");
+            if ((long) edges + count > Integer.MAX_VALUE)
+                throw new IllegalStateException("Too many edges");
+            for (int i = 0; i < count; i++) {
+                if (adjacents[i] < 0 || adjacents[i] >= nodes)
+                    throw new IllegalArgumentException("There's no node with index " + adjacents[i]);
+            }
+
+            labels.set(added, label);
+            offsets.set(added, edges);
+            added++;
+            if (channel == null) {
+                if (edges + count > targets.length()) {
+                    long capacity = Math.max(edges + (long) count, targets.length() * 2L);
+                    targets = targets.copyOf((int) Math.min(capacity, Integer.MAX_VALUE));
+                }
+                for (int i = 0; i < count; i++)
+                    targets.set(edges++, adjacents[i]);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    if (!buffer.hasRemaining())
+                        flush();
+                    buffer.putInt(adjacents[i]);
+                    edges++;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Builds the graph once every node has been added. The builder can't be used afterwards, and
+         * its file is closed even if writing it fails.
+         */
+        public OffHeapGraph build() throws IOException {
+            if (built)
+                throw new IllegalStateException("The graph has already been built");
+            if (added < nodes)
+                throw new IllegalStateException("Only " + added + " of " + nodes + " nodes have been added");
+            built = true;
+            offsets.set(nodes, edges);
+            if (channel == null)
+                return new OffHeapGraph(nodes, edges, labels, offsets, targets.copyOf(edges));
+
+            try (channel) {
+                flush();
+                writeHeader(channel, nodes, edges);
+                var mapped = OffHeapIntArray.map(channel, FileChannel.MapMode.READ_ONLY, targetsPosition(), edges);
+                return new OffHeapGraph(nodes, edges, labels, offsets, mapped);
+            }
+        }
+
+        /**
+         * Closes the file of a builder whose graph hasn't been built, which is left incomplete. Does
+         * nothing if the graph has already been built.
+         */
+        @Override
+        public void close() throws IOException {
+            built = true;
+            if (channel != null)
+                channel.close();
+        }
+
+        /**
+         * Appends the buffered targets to the file.
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            int buffered = buffer.remaining() / Integer.BYTES;
+            long position = targetsPosition() + (long) (edges - buffered) * Integer.BYTES;
+            while (buffer.hasRemaining())
+                position += channel.write(buffer, position);
+            buffer.clear();
+        }
+
+        /**
+         * Position in the file where the targets start.
+         */
+        private long targetsPosition() {
+            return HEADER_BYTES + (2L * nodes + 1) * Integer.BYTES;
+        }
+
+        private static void checkNodes(int nodes) {
+            if (nodes < 0 || nodes == Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Invalid number of nodes: " + nodes);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ucm.erikkarl.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link IntArray} stored outside of the Java heap, either in direct buffers or in regions of a
+ * mapped file. A single buffer can't hold more than 2 GiB, so elements are split into chunks of
+ * {@link #CHUNK_SIZE} elements and an array can have up to {@link Integer#MAX_VALUE} of them.
+ * <p>
+ * The garbage collector only sees one small object per chunk, no matter how long the array is.
+ * Direct memory is released when the array becomes unreachable.
+ */
+final class OffHeapIntArray implements IntArray {
+    private static final int CHUNK_BITS = 27;
+    /**
+     * Elements per chunk, 512 MiB.
+     */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Every chunk but the last one has {@link #CHUNK_SIZE} elements.
+     */
+    private final IntBuffer[] chunks;
+    private final int length;
+
+    private OffHeapIntArray(IntBuffer[] chunks, int length) {
+        this.chunks = chunks;
+        this.length = length;
+    }
+
+    /**
+     * Creates an array of <code>length</code> zeros in direct memory.
+     */
+    static OffHeapIntArray allocate(int length) {
+        if (length < 0)
+            throw new IllegalArgumentException("Length cannot be negative");
+        var chunks = new IntBuffer[chunkCount(length)];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = allocateChunk(chunkLength(length, i));
+        return new OffHeapIntArray(chunks, length);
+    }
+
+    /**
+     * Maps <code>length</code> little endian <code>int</code>s of <code>channel</code> starting at
+     * <code>position</code>. The mapping stays valid after the channel is closed.
+     */
+    static OffHeapIntArray map(FileChannel channel, FileChannel.MapMode mode, long position, int length)
+            throws IOException {
+        var chunks = new IntBuffer[chunkCount(length)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = position + ((long) i << CHUNK_BITS) * Integer.BYTES;
+            chunks[i] = channel.map(mode, start, (long) chunkLength(length, i) * Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asIntBuffer();
+        }
+        return new OffHeapIntArray(chunks, length);
+    }
+
+    /**
+     * Returns an array with the first <code>newLength</code> elements of this one, padded with zeros.
+     * Full chunks are shared instead of copied, so this array must not be modified afterwards.
+     */
+    OffHeapIntArray copyOf(int newLength) {
+        if (newLength < 0)
+            throw new IllegalArgumentException("Length cannot be negative");
+        var result = new IntBuffer[chunkCount(newLength)];
+        for (int i = 0; i < result.length; i++) {
+            int size = chunkLength(newLength, i);
+            if (i < chunks.length && chunks[i].capacity() == size) {
+                result[i] = chunks[i];
+            } else {
+                result[i] = allocateChunk(size);
+                if (i < chunks.length) {
+                    var source = chunks[i].duplicate().clear();
+                    source.limit(Math.min(size, source.capacity()));
+                    result[i].put(source).clear();
+                }
+            }
+        }
+        return new OffHeapIntArray(result, newLength);
+    }
+
+    /**
+     * Writes the first <code>count</code> elements to <code>channel</code> at <code>position</code>
+     * as little endian <code>int</code>s.
+     */
+    void writeTo(FileChannel channel, long position, int count) throws IOException {
+        var buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        var ints = buffer.asIntBuffer();
+        for (int i = 0; i < count; ) {
+            int n = Math.min(ints.capacity(), count - i);
+            var source = chunks[i >>> CHUNK_BITS].duplicate().clear();
+            int offset = i & CHUNK_MASK;
+            source.position(offset).limit(Math.min(source.capacity(), offset + n));
+            n = source.remaining();
+            ints.clear();
+            ints.put(source);
+            buffer.clear().limit(n * Integer.BYTES);
+            while (buffer.hasRemaining())
+                position += channel.write(buffer, position);
+            i += n;
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public int get(int index) {
+        return chunks[index >>> CHUNK_BITS].get(index & CHUNK_MASK);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        chunks[index >>> CHUNK_BITS].put(index & CHUNK_MASK, value);
+    }
+
+    @Override
+    public void fill(int value) {
+        for (var chunk : chunks) {
+            for (int i = 0; i < chunk.capacity(); i++)
+                chunk.put(i, value);
+        }
+    }
+
+    private static IntBuffer allocateChunk(int size) {
+        return ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    private static int chunkCount(int length) {
+        return (int) (((long) length + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+    }
+
+    private static int chunkLength(int length, int chunk) {
+        return Math.min(CHUNK_SIZE, length - (chunk << CHUNK_BITS));
+    }
+}
@@ -0,0 +1,62 @@
+package ucm.erikkarl.graph;
+
+import java.util.SplittableRandom;
+
+/**
+ * Barabasi-Albert preferential attachment generator: nodes are added one by one, and each new node
+ * gets <code>d</code> edges to nodes added before it, chosen with probability proportional to their
+ * degree. The degrees follow a power law. Edges point from newer nodes to older ones, so the graph is
+ * acyclic unless components are planted.
+ * <p>
+ * Follows Batagelj and Brandes: edge <code>i</code> is stored in the virtual array <code>M</code> as
+ * its source <code>M[2i]</code> and its target <code>M[2i + 1] = M[r]</code>, with <code>r</code> uniform
+ * in <code>[0, 2i]</code>. Picking a random cell of <code>M</code> picks a node with probability
+ * proportional to its degree. Here <code>r</code> is a hash of the seed and the cell, so <code>M</code>
+ * doesn't have to be stored: each target is found by following cells back until reaching a source,
+ * which takes two steps on average. That way edges can be generated in any order, and in parallel.
+ */
+public final class PreferentialAttachmentGenerator extends GraphGenerator {
+    private static final int EDGES_PER_CHUNK = 1 << 16;
+
+    private final int edgesPerNode;
+
+    public PreferentialAttachmentGenerator(int nodes, int edgesPerNode, long seed) {
+        super(nodes, seed);
+        if (edgesPerNode < 0)
+            throw new IllegalArgumentException("Number of edges cannot be negative");
+        this.edgesPerNode = edgesPerNode;
+    }
+
+    @Override
+    protected int numberOfChunks() {
+        return (int) ((expectedEdges() + EDGES_PER_CHUNK - 1) / EDGES_PER_CHUNK);
+    }
+
+    @Override
+    protected long expectedEdges() {
+        return (long) nodes * edgesPerNode;
+    }
+
+    /**
+     * Doesn't use <code>random</code>, since the target of each edge depends only on the seed and
+     * the edge.
+     */
+    @Override
+    protected void generateChunk(int chunk, SplittableRandom random, EdgeList edges) {
+        long first = (long) chunk * EDGES_PER_CHUNK;
+        long last = Math.min(first + EDGES_PER_CHUNK, expectedEdges());
+        for (long edge = first; edge < last; edge++)
+            edges.add((int) (edge / edgesPerNode), nodeAt(2 * edge + 1));
+    }
+
+    /**
+     * Node stored in the cell <code>cell</code> of the virtual array <code>M</code>.
+     */
+    private int nodeAt(long cell) {
+        while (cell % 2 == 1) {
+            double r = (mix(seed, cell) >>> 11) * 0x1.0p-53;
+            cell = (long) (r * cell);
+        }
+        return (int) (cell / 2 / edgesPerNode);
+    }
+}
@@ -26,13 +26,20 @@ public final class RandomGraphGenerator {
     }
 
     public Graph<Integer> createGraph() {
-        var graph = new Graph<Integer>();
+        var builder = new GraphBuilder(nodesInGraph, nodesInGraph * 2);
         var nodes = createUnusedNodesList();
+        var adjacents = new int[16];
 
         for (Integer i : range) {
-            graph.addEdges(i, randomQuantityOfRandomNodes(i, nodes));
+            var randomNodes = randomQuantityOfRandomNodes(i, nodes);
+            if (randomNodes.size() > adjacents.length)
+                adjacents = new int[randomNodes.size()];
+            int count = 0;
+            for (Integer adj : randomNodes)
+                adjacents[count++] = adj;
+            builder.addEdges(i, adjacents, count);
         }
-        return graph;
+        return builder.buildGraph();
     }
 
     private List<Integer> randomQuantityOfRandomNodes(Integer node, LinkedList<Integer> unusedNodes) {
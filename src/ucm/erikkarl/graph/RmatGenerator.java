@@ -0,0 +1,80 @@
+package ucm.erikkarl.graph;
+
+import java.util.SplittableRandom;
+
+/**
+ * R-MAT generator, a recursive version of the Kronecker graph model. Each edge is placed by choosing
+ * one of the four quadrants of the adjacency matrix with probabilities <code>a</code>, <code>b</code>,
+ * <code>c</code> and <code>1 - a - b - c</code>, and then again inside that quadrant until a single cell
+ * is left. With the default probabilities the degrees follow a power law, like many real graphs.
+ * <p>
+ * The matrix has a power of two rows, so edges that fall outside the <code>n</code> nodes are drawn again.
+ */
+public final class RmatGenerator extends GraphGenerator {
+    public static final double DEFAULT_A = 0.57;
+    public static final double DEFAULT_B = 0.19;
+    public static final double DEFAULT_C = 0.19;
+
+    private final long edges;
+    private final double a;
+    private final double b;
+    private final double c;
+    private final int levels;
+
+    public RmatGenerator(int nodes, long edges, long seed) {
+        this(nodes, edges, DEFAULT_A, DEFAULT_B, DEFAULT_C, seed);
+    }
+
+    public RmatGenerator(int nodes, long edges, double a, double b, double c, long seed) {
+        super(nodes, seed);
+        if (edges < 0)
+            throw new IllegalArgumentException("Number of edges cannot be negative");
+        if (edges > 0 && nodes < 2)
+            throw new IllegalArgumentException("Edges need at least two nodes");
+        if (a < 0 || b < 0 || c < 0 || a + b + c > 1)
+            throw new IllegalArgumentException("Quadrant probabilities must add up to at most 1");
+        this.edges = edges;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.levels = nodes > 1 ? 32 - Integer.numberOfLeadingZeros(nodes - 1) : 0;
+    }
+
+    @Override
+    protected int numberOfChunks() {
+        return (int) ((edges + FixedEdgeCountGenerator.EDGES_PER_CHUNK - 1) / FixedEdgeCountGenerator.EDGES_PER_CHUNK);
+    }
+
+    @Override
+    protected long expectedEdges() {
+        return edges;
+    }
+
+    @Override
+    protected void generateChunk(int chunk, SplittableRandom random, EdgeList edgeList) {
+        long count = Math.min(FixedEdgeCountGenerator.EDGES_PER_CHUNK,
+                edges - (long) chunk * FixedEdgeCountGenerator.EDGES_PER_CHUNK);
+        for (long i = 0; i < count; i++) {
+            int from;
+            int to;
+            do {
+                from = 0;
+                to = 0;
+                for (int level = 0; level < levels; level++) {
+                    double r = random.nextDouble();
+                    from <<= 1;
+                    to <<= 1;
+                    if (r >= a + b + c) {
+                        from |= 1;
+                        to |= 1;
+                    } else if (r >= a + b) {
+                        from |= 1;
+                    } else if (r >= a) {
+                        to |= 1;
+                    }
+                }
+            } while (from >= nodes || to >= nodes || from == to);
+            edgeList.add(from, to);
+        }
+    }
+}
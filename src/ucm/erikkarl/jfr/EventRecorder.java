@@ -0,0 +1,82 @@
+package ucm.erikkarl.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+
+/**
+ * Graba con JFR los eventos de este paquete, junto con los de la configuracion <code>default</code>
+ * de la maquina virtual, en un fichero que se puede abrir con JDK Mission Control o con la
+ * herramienta <code>jfr</code>.
+ * <p>
+ * Los eventos estan desactivados por defecto, asi que mientras no se graban no cuestan casi nada.
+ * Tambien se pueden activar en una grabacion iniciada con <code>-XX:StartFlightRecording</code>
+ * anadiendo, por ejemplo, <code>ucm.erikkarl.Solve#enabled=true</code> a su configuracion.
+ */
+public final class EventRecorder {
+    private static final List<Class<? extends Event>> EVENTS = List.of(
+            GraphParseEvent.class, SolveEvent.class, TransposeEvent.class, ResultsWriteEvent.class);
+
+    private static Recording recording;
+
+    private EventRecorder() {
+    }
+
+    public static synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Empieza a grabar los eventos en <code>file</code>.
+     *
+     * @throws IllegalStateException Si ya se esta grabando.
+     */
+    public static synchronized void start(File file) throws IOException {
+        if (recording != null)
+            throw new IllegalStateException("Events are already being recorded");
+
+        Recording newRecording;
+        try {
+            newRecording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            newRecording = new Recording();
+        }
+        try {
+            for (var event : EVENTS)
+                newRecording.enable(event);
+            newRecording.setName("MAR1");
+            newRecording.setToDisk(true);
+            newRecording.setDestination(file.toPath());
+            newRecording.start();
+        } catch (IOException | RuntimeException e) {
+            newRecording.close();
+            throw e;
+        }
+        recording = newRecording;
+    }
+
+    /**
+     * Deja de grabar y guarda los eventos en el fichero indicado en {@link #start(File)}.
+     *
+     * @return Fichero con los eventos grabados.
+     * @throws IllegalStateException Si no se esta grabando.
+     */
+    public static synchronized File stop() {
+        if (recording == null)
+            throw new IllegalStateException("Events are not being recorded");
+
+        var file = recording.getDestination().toFile();
+        try {
+            recording.stop();
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        return file;
+    }
+}
@@ -0,0 +1,32 @@
+package ucm.erikkarl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR por cada grafo que se lee de un fichero de test.
+ */
+@Name("ucm.erikkarl.GraphParse")
+@Label("Parse Graph")
+@Category({"MAR1", "Tests"})
+@Description("Reading and construction of one graph of a tests file")
+@Enabled(false)
+@StackTrace(false)
+public final class GraphParseEvent extends jdk.jfr.Event {
+    public static final String TEXT = "text";
+    public static final String BINARY = "binary";
+
+    @Label("Format")
+    @Description("Format of the tests file: text or binary")
+    public String format;
+
+    @Label("Nodes")
+    public int nodes;
+
+    @Label("Edges")
+    public int edges;
+}
@@ -0,0 +1,25 @@
+package ucm.erikkarl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR por cada fichero de resultados de un test que se escribe.
+ */
+@Name("ucm.erikkarl.ResultsWrite")
+@Label("Write Results")
+@Category({"MAR1", "Tests"})
+@Description("Writing of one of the result files of a test")
+@Enabled(false)
+@StackTrace(false)
+public final class ResultsWriteEvent extends jdk.jfr.Event {
+    @Label("File")
+    public String file;
+
+    @Label("Cases")
+    public int cases;
+}
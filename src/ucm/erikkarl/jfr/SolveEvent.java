@@ -0,0 +1,33 @@
+package ucm.erikkarl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR por cada llamada a los metodos de {@link ucm.erikkarl.exercise4.Exercise4} que
+ * resuelven un grafo.
+ */
+@Name("ucm.erikkarl.Solve")
+@Label("Solve Graph")
+@Category({"MAR1", "Exercise 4"})
+@Description("Topological order or strongly connected components of one graph")
+@Enabled(false)
+@StackTrace(false)
+public final class SolveEvent extends jdk.jfr.Event {
+    @Label("Algorithm")
+    public String algorithm;
+
+    @Label("Nodes")
+    public int nodes;
+
+    @Label("Edges")
+    public int edges;
+
+    @Label("Components")
+    @Description("Number of elements of the solution, which is the number of nodes if the graph has no loops")
+    public int components;
+}
@@ -0,0 +1,28 @@
+package ucm.erikkarl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR por cada grafo traspuesto que se construye.
+ */
+@Name("ucm.erikkarl.Transpose")
+@Label("Transpose Graph")
+@Category({"MAR1", "Exercise 4"})
+@Description("Construction of a graph with all the edges of another one reversed")
+@Enabled(false)
+@StackTrace(false)
+public final class TransposeEvent extends jdk.jfr.Event {
+    @Label("Graph Type")
+    public String graphType;
+
+    @Label("Nodes")
+    public int nodes;
+
+    @Label("Edges")
+    public int edges;
+}
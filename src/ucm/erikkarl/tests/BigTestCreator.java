@@ -1,38 +1,57 @@
 package ucm.erikkarl.tests;
 
 import ucm.erikkarl.cli.GraphCLI;
-import ucm.erikkarl.graph.RandomGraphGenerator;
+import ucm.erikkarl.graph.ErdosRenyiGenerator;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Crea ficheros de test donde cada grafo tiene un numero distinto de nodos, segun un
+ * {@link SizeSweep}. Los grafos se crean con {@link ErdosRenyiGenerator} en paralelo y se escriben
+ * en el fichero segun se van generando, asi que nunca se tiene un grafo entero en memoria y se
+ * pueden crear grafos de millones de nodos.
+ */
 public final class BigTestCreator {
-    // Lista de enteros: 1, 2, ..., 9, 10, 20, ..., 90, 100, 200...
-    private static final List<Integer> nodesNumberList;
-
-    static {
-        nodesNumberList = new LinkedList<>();
-        for (int n = 1; n < 10000; n += 100) {
-            nodesNumberList.add(n);
-        }
-    }
+    public static final SizeSweep DEFAULT_SWEEP = SizeSweep.linear(1, 9901, 100);
+    public static final double DEFAULT_EDGES_PER_NODE = 3;
+    public static final long DEFAULT_SEED = 42;
 
     private BigTestCreator() {
     }
 
+    /**
+     * Crea un "big test" con los tamanos de {@link #DEFAULT_SWEEP}.
+     */
     public static void create(String fileName) {
-        try (var file = new BufferedWriter(new FileWriter(fileName))) {
-            for (Integer n : nodesNumberList) {
-                var graph = new RandomGraphGenerator(n).createGraph();
-                file.write(TestManager.graphToString(graph));
+        create(fileName, DEFAULT_SWEEP, DEFAULT_EDGES_PER_NODE, DEFAULT_SEED);
+    }
+
+    /**
+     * Crea un "big test" con un grafo por cada tamano de <code>sweep</code>.
+     *
+     * @param edgesPerNode Numero medio de aristas que salen de cada nodo.
+     * @param seed         Semilla de la que salen las de todos los grafos, de modo que con la misma
+     *                     semilla siempre se crea el mismo fichero.
+     * @throws IllegalArgumentException Si <code>edgesPerNode</code> es negativo o no es finito.
+     */
+    public static void create(String fileName, SizeSweep sweep, double edgesPerNode, long seed) {
+        if (!(edgesPerNode >= 0) || Double.isInfinite(edgesPerNode))
+            throw new IllegalArgumentException("Average edges per node must be a non-negative number");
+        var seeds = new SplittableRandom(seed);
+        try (var file = new TestFileWriter(new File(fileName))) {
+            for (int n : sweep.sizes()) {
+                double probability = n > 1 ? Math.min(1, edgesPerNode / (n - 1)) : 0;
+                var generator = new ErdosRenyiGenerator(n, probability, seeds.nextLong());
+
+                file.startGraph();
+                generator.generate(ForkJoinPool.commonPool(), file);
                 GraphCLI.printMessage("Created graph with " + n + " nodes");
             }
         } catch (IOException e) {
             System.err.println("Error: could not create big test.");
         }
     }
-
 }
@@ -0,0 +1,277 @@
+package ucm.erikkarl.tests;
+
+import ucm.erikkarl.graph.CompactGraph;
+import ucm.erikkarl.graph.OffHeapGraph;
+import ucm.erikkarl.jfr.GraphParseEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Ficheros de test en formato binario, para no tener que analizar el texto de cada grafo cada vez
+ * que se ejecuta un test. Todos los numeros son little-endian.
+ * <p>
+ * <b>Formato (version 1):</b>
+ * <ul>
+ *     <li>Cabecera de {@value #HEADER_SIZE} bytes: {@link #MAGIC} (int), version (int), numero de
+ *     grafos (int), reservado (int) y posicion de la tabla de grafos (long).</li>
+ *     <li>Cada grafo seguido: numero de nodos <code>n</code> (int), numero de aristas <code>a</code>
+ *     (int), valores de los nodos (<code>n</code> ints), <code>offsets</code> (<code>n + 1</code> ints)
+ *     y <code>targets</code> (<code>a</code> ints) de su {@link CompactGraph}.</li>
+ *     <li>Tabla de grafos al final: posicion de cada grafo en el fichero (un long por grafo).</li>
+ * </ul>
+ * La tabla va al final para poder escribir los grafos segun se generan, sin saber antes cuantos
+ * hay. Al leer, cada grafo se proyecta en memoria con {@link FileChannel#map} y sus arrays se copian
+ * de golpe, sin analizar nada arista a arista.
+ */
+final class BinaryTestFile {
+    /**
+     * "MARG" en ASCII.
+     */
+    static final int MAGIC = 0x4752414D;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Lee el grafo que empieza en una posicion del fichero.
+     */
+    @FunctionalInterface
+    private interface GraphReader<G> {
+        G read(FileChannel channel, long position) throws IOException;
+    }
+
+    private BinaryTestFile() {
+    }
+
+    /**
+     * Indica si <code>file</code> empieza con la cabecera de un fichero de test binario.
+     */
+    static boolean isBinary(File file) throws IOException {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            var magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) ;
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Escribe los grafos de <code>graphs</code> en el fichero binario <code>file</code> segun van
+     * llegando.
+     *
+     * @return Numero de grafos escritos.
+     */
+    static int write(Stream<CompactGraph> graphs, File file) throws IOException {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            var positions = new long[16];
+            int count = 0;
+
+            channel.position(HEADER_SIZE);
+            for (var iterator = graphs.iterator(); iterator.hasNext(); ) {
+                var graph = iterator.next();
+                if (count == positions.length)
+                    positions = Arrays.copyOf(positions, count * 2);
+                positions[count++] = channel.position() + buffer.position();
+
+                int n = graph.getNumberOfNodes();
+                putInt(channel, buffer, n);
+                putInt(channel, buffer, graph.getNumberOfEdges());
+                for (int i = 0; i < n; i++)
+                    putInt(channel, buffer, graph.label(i));
+                for (int i = 0; i < n; i++)
+                    putInt(channel, buffer, graph.edgesStart(i));
+                putInt(channel, buffer, graph.getNumberOfEdges());
+                for (int e = 0; e < graph.getNumberOfEdges(); e++)
+                    putInt(channel, buffer, graph.edgeTarget(e));
+            }
+
+            long tablePosition = channel.position() + buffer.position();
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < Long.BYTES)
+                    flush(channel, buffer);
+                buffer.putLong(positions[i]);
+            }
+            flush(channel, buffer);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0).putLong(tablePosition);
+            buffer.flip();
+            channel.position(0);
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            return count;
+        }
+    }
+
+    /**
+     * Lee los grafos del fichero binario <code>file</code> de uno en uno. Hay que cerrar el
+     * <code>Stream</code> para cerrar el fichero.
+     *
+     * @throws IOException Si no se puede abrir el fichero o su cabecera no es valida. Los errores
+     *                     al leer cada grafo se lanzan como {@link UncheckedIOException}.
+     */
+    static Stream<CompactGraph> stream(File file) throws IOException {
+        return stream(file, BinaryTestFile::readGraph);
+    }
+
+    /**
+     * Igual que {@link #stream(File)}, pero cada grafo se copia directamente del fichero a un
+     * {@link OffHeapGraph} en memoria directa, sin crear en el heap sus arrays de nodos y aristas.
+     */
+    static Stream<OffHeapGraph> streamOffHeap(File file) throws IOException {
+        return stream(file, BinaryTestFile::readOffHeapGraph);
+    }
+
+    private static <G> Stream<G> stream(File file, GraphReader<G> reader) throws IOException {
+        var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a binary tests file");
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported binary tests file version " + version);
+            int count = header.getInt();
+            header.getInt();
+            long tablePosition = header.getLong();
+            var table = channel.map(FileChannel.MapMode.READ_ONLY, tablePosition, (long) count * Long.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+            var iterator = new Iterator<G>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                public G next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    try {
+                        return reader.read(channel, table.get(next++));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            var spliterator = Spliterators.spliterator(iterator, count,
+                    Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SIZED);
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lee el grafo que empieza en la posicion <code>position</code> del fichero.
+     */
+    private static CompactGraph readGraph(FileChannel channel, long position) throws IOException {
+        var event = new GraphParseEvent();
+        event.begin();
+        IntBuffer data = mapGraph(channel, position);
+        int n = data.get();
+        int edges = data.get();
+        var labels = new int[n];
+        var offsets = new int[n + 1];
+        var targets = new int[edges];
+        data.get(labels).get(offsets).get(targets);
+        commit(event, n, edges);
+        return CompactGraph.of(labels, offsets, targets);
+    }
+
+    /**
+     * Igual que {@link #readGraph(FileChannel, long)}, pero copia el grafo nodo a nodo en un
+     * {@link OffHeapGraph}.
+     */
+    private static OffHeapGraph readOffHeapGraph(FileChannel channel, long position) throws IOException {
+        var event = new GraphParseEvent();
+        event.begin();
+        IntBuffer data = mapGraph(channel, position);
+        int n = data.get();
+        int edges = data.get();
+        int labelsStart = data.position();
+        int offsetsStart = labelsStart + n;
+        int targetsStart = offsetsStart + n + 1;
+
+        var adjacents = new int[16];
+        OffHeapGraph graph;
+        try (var builder = new OffHeapGraph.Builder(n)) {
+            for (int i = 0; i < n; i++) {
+                int start = data.get(offsetsStart + i);
+                int end = data.get(offsetsStart + i + 1);
+                if (start < 0 || end < start || end > edges)
+                    throw new IOException("Malformed graph");
+                if (end - start > adjacents.length)
+                    adjacents = new int[Math.max(end - start, adjacents.length * 2)];
+                data.get(targetsStart + start, adjacents, 0, end - start);
+                builder.addNode(data.get(labelsStart + i), adjacents, end - start);
+            }
+            graph = builder.build();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed graph", e);
+        }
+        commit(event, n, edges);
+        return graph;
+    }
+
+    /**
+     * Proyecta en memoria el grafo que empieza en la posicion <code>position</code> del fichero,
+     * desde su numero de nodos hasta el final de sus aristas.
+     */
+    private static IntBuffer mapGraph(FileChannel channel, long position) throws IOException {
+        var sizes = channel.map(FileChannel.MapMode.READ_ONLY, position, 2L * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int n = sizes.getInt();
+        int edges = sizes.getInt();
+        long length = ((long) n + n + 1 + edges + 2) * Integer.BYTES;
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("Graph too big to be mapped");
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static void commit(GraphParseEvent event, int nodes, int edges) {
+        if (event.shouldCommit()) {
+            event.format = GraphParseEvent.BINARY;
+            event.nodes = nodes;
+            event.edges = edges;
+            event.commit();
+        }
+    }
+
+    private static void putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES)
+            flush(channel, buffer);
+        buffer.putInt(value);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,140 @@
+package ucm.erikkarl.tests;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Escribe texto ASCII en un fichero codificando los numeros directamente en un buffer de bytes que
+ * se reutiliza, sin crear cadenas de texto intermedias. Asi escribir ficheros enormes usa siempre la
+ * misma memoria.
+ */
+class ChannelWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Espacio suficiente para cualquier numero que se escribe de una vez.
+     */
+    private static final int MAX_NUMBER_LENGTH = 32;
+    private static final int DECIMALS = 6;
+    private static final long DECIMALS_SCALE = 1000000L;
+    /**
+     * Por debajo de este valor, al multiplicar por {@link #DECIMALS_SCALE} el error es menor que
+     * {@link #TIE_MARGIN}, asi que el producto redondea igual que los digitos decimales del numero.
+     */
+    private static final double MAX_FAST_DECIMAL = 1e6;
+    /**
+     * Distancia a la mitad entre dos valores de la ultima cifra a partir de la cual el redondeo del
+     * producto binario puede no coincidir con el redondeo decimal de <code>"%f"</code>.
+     */
+    private static final double TIE_MARGIN = 1e-3;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    /**
+     * Digitos de un numero, escritos de atras hacia delante.
+     */
+    private final byte[] digits = new byte[20];
+    private int position = 0;
+
+    ChannelWriter(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    ChannelWriter write(char c) throws IOException {
+        ensureSpace(1);
+        bytes[position++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Escribe <code>text</code>, que solo puede tener caracteres ASCII.
+     */
+    ChannelWriter write(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            if (position == bytes.length)
+                flush();
+            bytes[position++] = (byte) text.charAt(i);
+        }
+        return this;
+    }
+
+    ChannelWriter write(int value) throws IOException {
+        return write((long) value);
+    }
+
+    ChannelWriter write(long value) throws IOException {
+        if (value == Long.MIN_VALUE)
+            return write(Long.toString(value));
+        ensureSpace(MAX_NUMBER_LENGTH);
+        if (value < 0) {
+            bytes[position++] = '-';
+            value = -value;
+        }
+        writeDigits(value, 1);
+        return this;
+    }
+
+    /**
+     * Escribe <code>value</code> con {@value #DECIMALS} decimales, igual que <code>"%f"</code> en
+     * {@link String#format(String, Object...)}. Este redondea hacia arriba los digitos decimales de
+     * {@link Double#toString(double)} y no el valor binario, asi que los numeros que estan casi a mitad
+     * de camino entre dos resultados, como <code>0.5231775</code>, se escriben con
+     * {@link String#format(String, Object...)}. Tambien los que son demasiado grandes o no son finitos.
+     */
+    ChannelWriter writeDecimal(double value) throws IOException {
+        double product = Math.abs(value) * DECIMALS_SCALE;
+        if (!(Math.abs(value) < MAX_FAST_DECIMAL) || Math.abs(product - Math.floor(product) - 0.5) < TIE_MARGIN)
+            return write(String.format("%f", value));
+
+        long scaled = Math.round(product);
+        ensureSpace(MAX_NUMBER_LENGTH);
+        if (Math.copySign(1.0, value) < 0)
+            bytes[position++] = '-';
+        writeDigits(scaled / DECIMALS_SCALE, 1);
+        bytes[position++] = '.';
+        writeDigits(scaled % DECIMALS_SCALE, DECIMALS);
+        return this;
+    }
+
+    /**
+     * Escribe los digitos de <code>value</code>, que no puede ser negativo, con ceros a la izquierda
+     * hasta tener al menos <code>minDigits</code> digitos. Tiene que haber espacio en el buffer.
+     */
+    private void writeDigits(long value, int minDigits) {
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (count < minDigits)
+            digits[count++] = '0';
+        while (count > 0)
+            bytes[position++] = digits[--count];
+    }
+
+    private void ensureSpace(int space) throws IOException {
+        if (bytes.length - position < space)
+            flush();
+    }
+
+    void flush() throws IOException {
+        buffer.clear().limit(position);
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
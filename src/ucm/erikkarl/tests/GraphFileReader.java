@@ -0,0 +1,218 @@
+package ucm.erikkarl.tests;
+
+import ucm.erikkarl.graph.CompactGraph;
+import ucm.erikkarl.jfr.GraphParseEvent;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lee un fichero de test grafo a grafo, sin cargarlo entero en memoria. Analiza directamente los
+ * bytes leidos del fichero, sin crear cadenas de texto por cada linea o numero, y construye cada
+ * grafo en su forma compacta.
+ * <p>
+ * Sigue el formato de {@link TestManager#graphToString(ucm.erikkarl.graph.Graph)}: cada grafo empieza
+ * con una linea {@link TestManager#START_OF_GRAPH} seguida de pares de lineas, la primera con un nodo
+ * y la segunda con sus nodos adyacentes separados por espacios.
+ * <p>
+ * Los errores de lectura se lanzan como {@link UncheckedIOException} porque un {@link Iterator} no
+ * puede lanzar excepciones comprobadas.
+ */
+final class GraphFileReader implements Iterator<CompactGraph>, Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Basta con el primer caracter de {@link TestManager#START_OF_GRAPH} para distinguir esa linea
+     * de las que tienen numeros.
+     */
+    private static final byte START_OF_GRAPH = (byte) TestManager.START_OF_GRAPH.charAt(0);
+    private static final int END_OF_FILE = -1;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    private int position = 0;
+    private int limit = 0;
+    private boolean nextGraphFound;
+    /**
+     * Nodos adyacentes de la linea que se esta leyendo. Se reutiliza en todas las lineas.
+     */
+    private int[] adjacents = new int[16];
+
+    GraphFileReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.nextGraphFound = skipToNextGraph();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextGraphFound;
+    }
+
+    /**
+     * Lee el siguiente grafo del fichero.
+     */
+    @Override
+    public CompactGraph next() {
+        if (!nextGraphFound)
+            throw new NoSuchElementException();
+
+        var event = new GraphParseEvent();
+        event.begin();
+        try {
+            var builder = new CompactGraph.Builder();
+            while (true) {
+                skipBlanks();
+                int c = peek();
+                if (c == END_OF_FILE) {
+                    nextGraphFound = false;
+                    break;
+                }
+                if (c == START_OF_GRAPH) {
+                    skipLine();
+                    break;
+                }
+                int node = readNumber();
+                skipLine();
+                int count = readAdjacentsLine();
+                builder.addEdges(node, adjacents, count);
+            }
+            var graph = builder.build();
+            if (event.shouldCommit()) {
+                event.format = GraphParseEvent.TEXT;
+                event.nodes = graph.getNumberOfNodes();
+                event.edges = graph.getNumberOfEdges();
+                event.commit();
+            }
+            return graph;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Avanza hasta pasar la primera linea {@link TestManager#START_OF_GRAPH}.
+     *
+     * @return <code>false</code> si se ha llegado al final del fichero sin encontrarla.
+     */
+    private boolean skipToNextGraph() throws IOException {
+        while (true) {
+            skipBlanks();
+            int c = peek();
+            if (c == END_OF_FILE)
+                return false;
+            boolean isStart = c == START_OF_GRAPH;
+            skipLine();
+            if (isStart)
+                return true;
+        }
+    }
+
+    /**
+     * Lee los numeros de la linea actual en <code>adjacents</code> y pasa a la siguiente linea.
+     *
+     * @return Numero de nodos leidos.
+     */
+    private int readAdjacentsLine() throws IOException {
+        int count = 0;
+        while (true) {
+            int c = peek();
+            if (c == ' ' || c == '\t' || c == '\r') {
+                position++;
+            } else if (c == '\n' || c == END_OF_FILE) {
+                if (c == '\n')
+                    position++;
+                return count;
+            } else {
+                if (count == adjacents.length)
+                    adjacents = Arrays.copyOf(adjacents, count * 2);
+                adjacents[count++] = readNumber();
+            }
+        }
+    }
+
+    /**
+     * Lee un entero en base 10, con signo opcional. Igual que {@link Integer#parseInt(String)}, acumula
+     * el valor en negativo para poder leer {@link Integer#MIN_VALUE} y lanza una
+     * {@link NumberFormatException} si el numero no cabe en un <code>int</code>.
+     */
+    private int readNumber() throws IOException {
+        boolean negative = false;
+        if (peek() == '-') {
+            negative = true;
+            position++;
+        }
+
+        int c = peek();
+        if (c < '0' || c > '9')
+            throw new NumberFormatException("Expected a number in the tests file");
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int value = 0;
+        while (c >= '0' && c <= '9') {
+            int digit = c - '0';
+            if (value < limit / 10 || value * 10 < limit + digit)
+                throw new NumberFormatException("Number out of range in the tests file");
+            value = value * 10 - digit;
+            position++;
+            c = peek();
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * Salta espacios en blanco, incluidos saltos de linea.
+     */
+    private void skipBlanks() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            position++;
+            c = peek();
+        }
+    }
+
+    /**
+     * Salta hasta el principio de la siguiente linea.
+     */
+    private void skipLine() throws IOException {
+        int c = peek();
+        while (c != '\n' && c != END_OF_FILE) {
+            position++;
+            c = peek();
+        }
+        if (c == '\n')
+            position++;
+    }
+
+    /**
+     * Devuelve el byte actual sin avanzar, leyendo mas del fichero si hace falta, o
+     * {@link #END_OF_FILE} si no quedan mas.
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill())
+            return END_OF_FILE;
+        return bytes[position];
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+}
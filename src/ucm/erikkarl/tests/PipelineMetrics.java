@@ -0,0 +1,226 @@
+package ucm.erikkarl.tests;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metricas de cada fase de la ejecucion de un test: cuantas veces se ejecuta, cuanto tarda en total y
+ * cuanta memoria reserva, ademas de contadores de los grafos resueltos. Se pueden exportar en JSON o
+ * en el formato de texto de Prometheus.
+ * <p>
+ * Estan desactivadas por defecto. Mientras lo estan, {@link #start(Phase)} devuelve siempre el mismo
+ * {@link Timer} que no hace nada y {@link #count(Counter, long)} vuelve sin hacer nada, asi que solo
+ * cuestan leer un campo. Se pueden usar desde varios hilos a la vez.
+ */
+public final class PipelineMetrics {
+    /**
+     * Fases de la ejecucion de un test.
+     */
+    public enum Phase {
+        /**
+         * Leer y construir cada grafo del fichero de test.
+         */
+        PARSE("parse"),
+        /**
+         * Calcular la huella de cada grafo y buscar su resultado en el almacen de resultados.
+         */
+        LOOKUP("lookup"),
+        /**
+         * Resolver cada grafo una vez, o buscarlo en la cache de soluciones.
+         */
+        SOLVE("solve"),
+        /**
+         * Medir el tiempo de ejecucion de cada grafo con {@link TimingEngine}.
+         */
+        MEASURE("measure"),
+        /**
+         * Guardar cada resultado en el almacen de resultados.
+         */
+        STORE("store"),
+        /**
+         * Escribir los ficheros de soluciones y de tiempos.
+         */
+        WRITE("write");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Contadores de los grafos de un test.
+     */
+    public enum Counter {
+        GRAPHS("graphs"),
+        NODES("nodes"),
+        EDGES("edges"),
+        COMPONENTS("components"),
+        /**
+         * Grafos con algun bucle, cuya solucion son sus componentes fuertemente conexas en vez de
+         * un orden topologico.
+         */
+        CYCLIC_GRAPHS("cyclic_graphs"),
+        /**
+         * Grafos cuyo resultado se ha tomado del almacen de resultados sin resolverlos.
+         */
+        STORED_RESULTS("stored_results");
+
+        private final String label;
+
+        Counter(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Mide una ejecucion de una fase desde que se crea hasta que se llama a {@link #stop()}, en el
+     * mismo hilo.
+     */
+    public static class Timer {
+        private final Phase phase;
+        private final long startTime;
+        private final long startBytes;
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+            this.startBytes = TimingEngine.allocatedBytes();
+            this.startTime = System.nanoTime();
+        }
+
+        public void stop() {
+            long elapsed = System.nanoTime() - startTime;
+            int i = phase.ordinal();
+            PHASE_CALLS[i].increment();
+            PHASE_NANOS[i].add(elapsed);
+            if (startBytes != TimingStatistics.ALLOCATION_UNKNOWN)
+                PHASE_BYTES[i].add(TimingEngine.allocatedBytes() - startBytes);
+        }
+    }
+
+    private static final Timer DISABLED = new Timer(Phase.PARSE) {
+        @Override
+        public void stop() {
+        }
+    };
+    private static final LongAdder[] PHASE_CALLS = adders(Phase.values().length);
+    private static final LongAdder[] PHASE_NANOS = adders(Phase.values().length);
+    private static final LongAdder[] PHASE_BYTES = adders(Phase.values().length);
+    private static final LongAdder[] COUNTERS = adders(Counter.values().length);
+    private static final String PREFIX = "mar1_";
+
+    private static volatile boolean enabled = false;
+
+    private PipelineMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        PipelineMetrics.enabled = enabled;
+    }
+
+    /**
+     * Empieza a medir una ejecucion de <code>phase</code>.
+     */
+    public static Timer start(Phase phase) {
+        return enabled ? new Timer(phase) : DISABLED;
+    }
+
+    /**
+     * Suma <code>amount</code> al contador <code>counter</code>.
+     */
+    public static void count(Counter counter, long amount) {
+        if (enabled)
+            COUNTERS[counter.ordinal()].add(amount);
+    }
+
+    /**
+     * Pone a cero todas las metricas, por ejemplo antes de empezar un test.
+     */
+    public static void reset() {
+        for (var adders : new LongAdder[][]{PHASE_CALLS, PHASE_NANOS, PHASE_BYTES, COUNTERS}) {
+            for (var adder : adders)
+                adder.reset();
+        }
+    }
+
+    /**
+     * Escribe el valor actual de las metricas como un objeto JSON.
+     */
+    static void writeJson(ChannelWriter file) throws IOException {
+        file.write("{\n  \"phases\": {");
+        for (var phase : Phase.values()) {
+            int i = phase.ordinal();
+            file.write(i > 0 ? ",\n" : "\n").write("    \"").write(phase.label).write("\": {")
+                    .write("\"calls\": ").write(PHASE_CALLS[i].sum())
+                    .write(", \"seconds\": ").writeDecimal(PHASE_NANOS[i].sum() / 1e9)
+                    .write(", \"allocatedBytes\": ").write(allocated(i)).write('}');
+        }
+        file.write("\n  },\n  \"counters\": {");
+        for (var counter : Counter.values()) {
+            int i = counter.ordinal();
+            file.write(i > 0 ? ",\n" : "\n").write("    \"").write(counter.label).write("\": ")
+                    .write(COUNTERS[i].sum());
+        }
+        var runtime = Runtime.getRuntime();
+        file.write("\n  },\n  \"gauges\": {\n")
+                .write("    \"heap_used_bytes\": ").write(runtime.totalMemory() - runtime.freeMemory()).write(",\n")
+                .write("    \"heap_max_bytes\": ").write(runtime.maxMemory()).write('\n')
+                .write("  }\n}\n");
+    }
+
+    /**
+     * Escribe el valor actual de las metricas en el formato de texto de Prometheus.
+     */
+    static void writePrometheus(ChannelWriter file) throws IOException {
+        writeHeader(file, "phase_calls_total", "counter", "Number of times each phase has run.");
+        for (var phase : Phase.values())
+            writeSample(file, "phase_calls_total", phase).write(PHASE_CALLS[phase.ordinal()].sum()).write('\n');
+        writeHeader(file, "phase_seconds_total", "counter", "Time spent in each phase.");
+        for (var phase : Phase.values())
+            writeSample(file, "phase_seconds_total", phase).writeDecimal(PHASE_NANOS[phase.ordinal()].sum() / 1e9)
+                    .write('\n');
+        writeHeader(file, "phase_allocated_bytes_total", "counter",
+                "Bytes allocated by each phase, or -1 if unknown.");
+        for (var phase : Phase.values())
+            writeSample(file, "phase_allocated_bytes_total", phase).write(allocated(phase.ordinal())).write('\n');
+
+        for (var counter : Counter.values()) {
+            var name = counter.label + "_total";
+            writeHeader(file, name, "counter", "Total number of " + counter.label.replace('_', ' ') + '.');
+            file.write(PREFIX).write(name).write(' ').write(COUNTERS[counter.ordinal()].sum()).write('\n');
+        }
+
+        var runtime = Runtime.getRuntime();
+        writeHeader(file, "heap_used_bytes", "gauge", "Heap in use when the snapshot was taken.");
+        file.write(PREFIX).write("heap_used_bytes ").write(runtime.totalMemory() - runtime.freeMemory()).write('\n');
+        writeHeader(file, "heap_max_bytes", "gauge", "Maximum heap size.");
+        file.write(PREFIX).write("heap_max_bytes ").write(runtime.maxMemory()).write('\n');
+    }
+
+    private static void writeHeader(ChannelWriter file, String name, String type, String help) throws IOException {
+        file.write("# HELP ").write(PREFIX).write(name).write(' ').write(help).write('\n');
+        file.write("# TYPE ").write(PREFIX).write(name).write(' ').write(type).write('\n');
+    }
+
+    private static ChannelWriter writeSample(ChannelWriter file, String name, Phase phase) throws IOException {
+        return file.write(PREFIX).write(name).write("{phase=\"").write(phase.label).write("\"} ");
+    }
+
+    private static long allocated(int phase) {
+        return TimingEngine.allocatedBytes() == TimingStatistics.ALLOCATION_UNKNOWN
+                ? TimingStatistics.ALLOCATION_UNKNOWN
+                : PHASE_BYTES[phase].sum();
+    }
+
+    private static LongAdder[] adders(int count) {
+        var adders = new LongAdder[count];
+        for (int i = 0; i < count; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+}
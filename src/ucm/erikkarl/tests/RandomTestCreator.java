@@ -2,8 +2,7 @@ package ucm.erikkarl.tests;
 
 import ucm.erikkarl.graph.RandomGraphGenerator;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Random;
@@ -40,10 +39,10 @@ public final class RandomTestCreator {
      * Crea un fichero de test de nombre <code>fileName</code>.
      */
     public final void createTestFile(String fileName) {
-        try (var file = new BufferedWriter(new FileWriter(fileName))) {
+        try (var file = new TestFileWriter(new File(fileName))) {
             for (int i = 0; i < numberOfCases; i++) {
                 var graph = new RandomGraphGenerator(nodesPerGraph).createGraph();
-                file.write(TestManager.graphToString(graph));
+                file.writeGraph(graph);
             }
         } catch (IOException e) {
             System.err.println("Either the file cannot be created or opened or it is a directory.");
@@ -0,0 +1,534 @@
+package ucm.erikkarl.tests;
+
+import ucm.erikkarl.exercise4.Exercise4;
+import ucm.erikkarl.exercise4.SolveResult;
+import ucm.erikkarl.graph.GraphFingerprint;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Almacen en disco de los resultados de los tests, identificados por la {@link GraphFingerprint} de
+ * cada grafo, para no volver a resolver en otra ejecucion del programa los grafos que ya se han
+ * resuelto. Todos los numeros son little-endian.
+ * <p>
+ * Los resultados se anaden al final de un registro dividido en segmentos de
+ * <code>maxBytes / {@value #SEGMENTS}</code> bytes como maximo. Cuando los segmentos ocupan mas de
+ * <code>maxBytes</code> se borra el mas antiguo, y con el los resultados que contiene. Cada resultado
+ * del registro tiene:
+ * <ul>
+ *     <li>{@link #RECORD_MAGIC} (int) y longitud del contenido en bytes (int).</li>
+ *     <li>Contenido: huella del grafo (dos longs), version de los algoritmos que calcularon el resultado
+ *     (int), si se midieron los tiempos (int), numero de aristas
+ *     (int), estadisticas de {@link TimingStatistics} (seis doubles, un int y un long), numero de nodos
+ *     <code>n</code> (int), numero de componentes <code>c</code> (int), nodos (<code>n</code> ints) y
+ *     posiciones de las componentes (<code>c + 1</code> ints) de su {@link SolveResult}.</li>
+ *     <li>CRC32 del contenido (int).</li>
+ * </ul>
+ * El indice de cada huella a su resultado se guarda en otro fichero que se reemplaza entero con
+ * {@link Files#move} cada vez que se llama a {@link #flush()}, asi que nunca queda a medias. Incluye
+ * hasta donde llegaba cada segmento al guardarlo, y al abrir el almacen se leen los resultados
+ * anadidos despues. Si el programa se interrumpe a mitad de escribir un resultado, su CRC no
+ * coincide y se descarta al abrir el almacen. Si falta el indice, esta danado o es de otra version
+ * de los algoritmos se vuelven a leer todos los segmentos.
+ * <p>
+ * Los resultados calculados con otra version de los algoritmos, normalmente {@link Exercise4#VERSION},
+ * no se usan, y se borran con el segmento en el que estan.
+ * <p>
+ * Se puede usar desde varios hilos a la vez.
+ */
+final class ResultStore implements Closeable {
+    /**
+     * "MARR" en ASCII.
+     */
+    static final int RECORD_MAGIC = 0x5252414D;
+    /**
+     * "MARI" en ASCII.
+     */
+    static final int INDEX_MAGIC = 0x4952414D;
+    static final int VERSION = 2;
+    /**
+     * Numero aproximado de segmentos entre los que se reparten los resultados guardados.
+     */
+    static final int SEGMENTS = 8;
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    /**
+     * Bytes de un resultado sin contar los arrays de su {@link SolveResult}.
+     */
+    private static final int FIXED_CONTENT_SIZE = 2 * Long.BYTES + 3 * Integer.BYTES + 6 * Double.BYTES
+            + Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = 2 * Long.BYTES + Integer.BYTES + Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String INDEX_FILE_NAME = "index";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Posicion de un resultado en el registro.
+     */
+    private static final class Location {
+        private final int segment;
+        private final long position;
+
+        private Location(int segment, long position) {
+            this.segment = segment;
+            this.position = position;
+        }
+    }
+
+    private final File directory;
+    private final long maxBytes;
+    private final long segmentBytes;
+    private final int solverVersion;
+    /**
+     * Fichero de cada segmento, del mas antiguo al mas nuevo. Solo se escribe en el ultimo.
+     */
+    private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+    private final Map<GraphFingerprint, Location> index = new HashMap<>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private long totalBytes = 0;
+    private boolean modified = false;
+
+    private ResultStore(File directory, long maxBytes, int solverVersion) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.solverVersion = solverVersion;
+        this.segmentBytes = Math.max(1, maxBytes / SEGMENTS);
+    }
+
+    /**
+     * Abre el almacen del directorio <code>directory</code> para los resultados de la version actual
+     * de los algoritmos, creandolo si no existe.
+     *
+     * @param maxBytes Tamano aproximado maximo de todos los resultados guardados.
+     */
+    static ResultStore open(File directory, long maxBytes) throws IOException {
+        return open(directory, maxBytes, Exercise4.VERSION);
+    }
+
+    /**
+     * Igual que {@link #open(File, long)}, pero solo aprovecha los resultados calculados con la version
+     * <code>solverVersion</code> de los algoritmos.
+     */
+    static ResultStore open(File directory, long maxBytes, int solverVersion) throws IOException {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Maximum size must be positive");
+        Files.createDirectories(directory.toPath());
+
+        var store = new ResultStore(directory, maxBytes, solverVersion);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Devuelve el resultado guardado para el grafo con huella <code>fingerprint</code>.
+     *
+     * @param measuredOnly Si solo sirven resultados cuyos tiempos se midieron con {@link TimingEngine}.
+     */
+    synchronized Optional<TestResults.Result> get(GraphFingerprint fingerprint, boolean measuredOnly) {
+        var location = index.get(fingerprint);
+        if (location == null)
+            return Optional.empty();
+
+        try {
+            var content = readRecord(segments.get(location.segment), location.position);
+            if (content == null || content.getLong() != fingerprint.getHigh()
+                    || content.getLong() != fingerprint.getLow() || content.getInt() != solverVersion) {
+                index.remove(fingerprint);
+                modified = true;
+                return Optional.empty();
+            }
+            boolean measured = content.getInt() != 0;
+            if (measuredOnly && !measured)
+                return Optional.empty();
+            return Optional.of(readResult(content));
+        } catch (IOException | RuntimeException e) {
+            index.remove(fingerprint);
+            modified = true;
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Anade al registro el resultado <code>result</code> del grafo con huella <code>fingerprint</code>,
+     * que sustituye al que hubiera antes. No queda guardado del todo hasta llamar a {@link #flush()}.
+     *
+     * @param measured Si los tiempos de <code>result</code> se midieron con {@link TimingEngine}.
+     */
+    synchronized void put(GraphFingerprint fingerprint, TestResults.Result result, boolean measured)
+            throws IOException {
+        var solution = result.getSolveResult();
+        int n = solution.getNumberOfNodes();
+        int components = solution.getNumberOfComponents();
+        long contentSize = FIXED_CONTENT_SIZE + ((long) n + components + 1) * Integer.BYTES;
+        long recordSize = RECORD_HEADER_SIZE + contentSize + Integer.BYTES;
+        if (recordSize > Math.min(maxBytes, Integer.MAX_VALUE))
+            return;
+
+        int segment = segments.isEmpty() ? 0 : segments.lastKey();
+        if (segments.isEmpty() || segments.get(segment).size() >= segmentBytes)
+            openSegment(segments.isEmpty() ? segment : ++segment);
+        var channel = segments.get(segment);
+        long position = channel.size();
+
+        try {
+            channel.position(position);
+            buffer.clear();
+            buffer.putInt(RECORD_MAGIC).putInt((int) contentSize);
+            writeBuffer(channel);
+            crc.reset();
+
+            var timing = result.getTiming();
+            putLong(channel, fingerprint.getHigh());
+            putLong(channel, fingerprint.getLow());
+            putInt(channel, solverVersion);
+            putInt(channel, measured ? 1 : 0);
+            putInt(channel, result.getGraphEdgesNumber());
+            putDouble(channel, timing.getMin());
+            putDouble(channel, timing.getMedian());
+            putDouble(channel, timing.getP90());
+            putDouble(channel, timing.getP99());
+            putDouble(channel, timing.getMean());
+            putDouble(channel, timing.getStandardDeviation());
+            putInt(channel, timing.getIterations());
+            putLong(channel, timing.getAllocatedBytesPerIteration());
+            putInt(channel, n);
+            putInt(channel, components);
+            for (int i = 0; i < n; i++)
+                putInt(channel, solution.node(i));
+            for (int c = 0; c < components; c++)
+                putInt(channel, solution.componentStart(c));
+            putInt(channel, n);
+
+            writeBuffer(channel);
+            buffer.putInt((int) crc.getValue());
+            writeBuffer(channel);
+        } catch (IOException | RuntimeException e) {
+            // Quita lo que se haya escrito del resultado para no dejarlo a medias
+            channel.truncate(position);
+            throw e;
+        }
+
+        index.put(fingerprint, new Location(segment, position));
+        totalBytes += recordSize;
+        modified = true;
+        evictOldSegments();
+    }
+
+    /**
+     * Asegura que los resultados anadidos estan en disco y guarda el indice.
+     */
+    synchronized void flush() throws IOException {
+        if (!modified)
+            return;
+        for (var channel : segments.values())
+            channel.force(false);
+        writeIndex();
+        modified = false;
+    }
+
+    /**
+     * Borra todos los resultados guardados.
+     */
+    synchronized void clear() throws IOException {
+        for (var id : segments.keySet().toArray(new Integer[0]))
+            deleteSegment(id);
+        index.clear();
+        totalBytes = 0;
+        Files.deleteIfExists(indexFile().toPath());
+        modified = false;
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            for (var channel : segments.values())
+                channel.close();
+            segments.clear();
+        }
+    }
+
+    /**
+     * Abre los segmentos del directorio, lee el indice y anade al indice los resultados que se
+     * escribieron despues de guardarlo.
+     */
+    private void load() throws IOException {
+        var files = directory.listFiles();
+        if (files != null) {
+            for (var file : files) {
+                var name = file.getName();
+                if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX))
+                    continue;
+                try {
+                    int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length()));
+                    openSegment(id);
+                } catch (NumberFormatException e) {
+                    // No es un segmento de este almacen
+                }
+            }
+        }
+
+        var indexedLengths = readIndex();
+        for (var segment : segments.entrySet()) {
+            int id = segment.getKey();
+            var channel = segment.getValue();
+            long start = indexedLengths.getOrDefault(id, 0L);
+            if (start > channel.size()) {
+                index.values().removeIf(location -> location.segment == id);
+                start = 0;
+            }
+            long end = scanSegment(id, channel, start);
+            if (end < channel.size())
+                channel.truncate(end);
+            if (end != start)
+                modified = true;
+            totalBytes += end;
+        }
+        evictOldSegments();
+    }
+
+    /**
+     * Anade al indice los resultados validos del segmento a partir de <code>position</code>, salvo los
+     * de otra version de los algoritmos.
+     *
+     * @return Posicion donde acaba el ultimo resultado valido.
+     */
+    private long scanSegment(int id, FileChannel channel, long position) throws IOException {
+        while (true) {
+            ByteBuffer content;
+            try {
+                content = readRecord(channel, position);
+            } catch (IOException | RuntimeException e) {
+                content = null;
+            }
+            if (content == null)
+                return position;
+            var fingerprint = new GraphFingerprint(content.getLong(), content.getLong());
+            if (content.getInt() == solverVersion)
+                index.put(fingerprint, new Location(id, position));
+            position += RECORD_HEADER_SIZE + content.limit() + Integer.BYTES;
+        }
+    }
+
+    /**
+     * Lee el contenido del resultado que empieza en la posicion <code>position</code> del segmento.
+     *
+     * @return El contenido proyectado en memoria, o <code>null</code> si no hay un resultado completo
+     * y con el CRC correcto en esa posicion.
+     */
+    private ByteBuffer readRecord(FileChannel channel, long position) throws IOException {
+        long size = channel.size();
+        if (position + RECORD_HEADER_SIZE + Integer.BYTES > size)
+            return null;
+        var header = channel.map(FileChannel.MapMode.READ_ONLY, position, RECORD_HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int contentSize = header.getInt(Integer.BYTES);
+        if (header.getInt(0) != RECORD_MAGIC || contentSize < FIXED_CONTENT_SIZE
+                || position + RECORD_HEADER_SIZE + contentSize + Integer.BYTES > size)
+            return null;
+
+        var record = channel.map(FileChannel.MapMode.READ_ONLY, position + RECORD_HEADER_SIZE,
+                contentSize + Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        var content = record.slice(0, contentSize).order(ByteOrder.LITTLE_ENDIAN);
+        crc.reset();
+        crc.update(content.duplicate());
+        if ((int) crc.getValue() != record.getInt(contentSize))
+            return null;
+        return content;
+    }
+
+    /**
+     * Crea un resultado con el contenido de <code>content</code> despues de la huella, de la version
+     * y de si se midieron los tiempos.
+     */
+    private static TestResults.Result readResult(ByteBuffer content) throws IOException {
+        int edges = content.getInt();
+        var timing = TimingStatistics.of(content.getDouble(), content.getDouble(), content.getDouble(),
+                content.getDouble(), content.getDouble(), content.getDouble(), content.getInt(), content.getLong());
+        int n = content.getInt();
+        int components = content.getInt();
+        if (n < 0 || components < 0 || content.remaining() != ((long) n + components + 1) * Integer.BYTES)
+            throw new IOException("Malformed stored result");
+
+        IntBuffer data = content.asIntBuffer();
+        var nodes = new int[n];
+        var componentOffsets = new int[components + 1];
+        data.get(nodes).get(componentOffsets);
+        return new TestResults.Result(timing, SolveResult.of(nodes, componentOffsets), n, edges);
+    }
+
+    /**
+     * Lee el fichero de indice.
+     *
+     * @return Hasta donde llegaba cada segmento al guardar el indice, o un mapa vacio si no hay
+     * indice, no es valido o es de otra version de los algoritmos, para que se lean todos los
+     * segmentos.
+     */
+    private Map<Integer, Long> readIndex() {
+        var lengths = new HashMap<Integer, Long>();
+        var file = indexFile();
+        if (!file.exists())
+            return lengths;
+
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE || channel.size() < 5L * Integer.BYTES)
+                return lengths;
+            var data = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (data.hasRemaining() && channel.read(data) >= 0) ;
+            data.flip();
+
+            int crcPosition = data.limit() - Integer.BYTES;
+            crc.reset();
+            crc.update(data.duplicate().limit(crcPosition));
+            if ((int) crc.getValue() != data.getInt(crcPosition)
+                    || data.getInt() != INDEX_MAGIC || data.getInt() != VERSION || data.getInt() != solverVersion)
+                return lengths;
+
+            int segmentCount = data.getInt();
+            for (int i = 0; i < segmentCount; i++)
+                lengths.put(data.getInt(), data.getLong());
+            int entries = data.getInt();
+            for (int i = 0; i < entries; i++) {
+                var fingerprint = new GraphFingerprint(data.getLong(), data.getLong());
+                var location = new Location(data.getInt(), data.getLong());
+                if (segments.containsKey(location.segment)
+                        && location.position < lengths.getOrDefault(location.segment, 0L))
+                    index.put(fingerprint, location);
+            }
+            lengths.keySet().retainAll(segments.keySet());
+            return lengths;
+        } catch (IOException | RuntimeException e) {
+            index.clear();
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Escribe el indice en un fichero temporal y lo mueve encima del anterior.
+     */
+    private void writeIndex() throws IOException {
+        var file = indexFile();
+        var temporary = new File(directory, INDEX_FILE_NAME + ".tmp");
+        try (var channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.clear();
+            crc.reset();
+            putInt(channel, INDEX_MAGIC);
+            putInt(channel, VERSION);
+            putInt(channel, solverVersion);
+            putInt(channel, segments.size());
+            for (var segment : segments.entrySet()) {
+                putInt(channel, segment.getKey());
+                putLong(channel, segment.getValue().size());
+            }
+            putInt(channel, index.size());
+            for (var entry : index.entrySet()) {
+                if (buffer.remaining() < INDEX_ENTRY_SIZE)
+                    writeBuffer(channel);
+                buffer.putLong(entry.getKey().getHigh()).putLong(entry.getKey().getLow())
+                        .putInt(entry.getValue().segment).putLong(entry.getValue().position);
+            }
+            writeBuffer(channel);
+            buffer.putInt((int) crc.getValue());
+            writeBuffer(channel);
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Borra los segmentos mas antiguos mientras los resultados guardados ocupen mas de
+     * <code>maxBytes</code>. Nunca borra el segmento en el que se esta escribiendo.
+     */
+    private void evictOldSegments() throws IOException {
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            int oldest = segments.firstKey();
+            totalBytes -= segments.get(oldest).size();
+            index.values().removeIf(location -> location.segment == oldest);
+            deleteSegment(oldest);
+            modified = true;
+        }
+    }
+
+    private FileChannel openSegment(int id) throws IOException {
+        var channel = FileChannel.open(segmentFile(id).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(id, channel);
+        return channel;
+    }
+
+    private void deleteSegment(int id) throws IOException {
+        segments.remove(id).close();
+        Files.deleteIfExists(segmentFile(id).toPath());
+    }
+
+    private File segmentFile(int id) {
+        return new File(directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    private File indexFile() {
+        return new File(directory, INDEX_FILE_NAME);
+    }
+
+    private void putInt(FileChannel channel, int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES)
+            writeBuffer(channel);
+        buffer.putInt(value);
+    }
+
+    private void putLong(FileChannel channel, long value) throws IOException {
+        if (buffer.remaining() < Long.BYTES)
+            writeBuffer(channel);
+        buffer.putLong(value);
+    }
+
+    private void putDouble(FileChannel channel, double value) throws IOException {
+        if (buffer.remaining() < Double.BYTES)
+            writeBuffer(channel);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Escribe el contenido de <code>buffer</code> en <code>channel</code> y lo anade al CRC.
+     */
+    private void writeBuffer(FileChannel channel) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
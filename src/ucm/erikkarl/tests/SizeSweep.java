@@ -0,0 +1,61 @@
+package ucm.erikkarl.tests;
+
+import java.util.Arrays;
+
+/**
+ * Numero de nodos de cada grafo de un "big test": desde un primer tamano hasta un ultimo tamano,
+ * sumando siempre los mismos nodos (pasos lineales) o multiplicando por el mismo factor (pasos
+ * geometricos). Los pasos geometricos sirven para cubrir desde unos pocos nodos hasta millones con
+ * pocos grafos.
+ */
+public final class SizeSweep {
+    public static final int MAX_NODES = 10000000;
+
+    private final int first;
+    private final int last;
+    private final int step;
+    private final double factor;
+
+    private SizeSweep(int first, int last, int step, double factor) {
+        if (first < 1 || last < first || last > MAX_NODES)
+            throw new IllegalArgumentException("Sizes must go from 1 up to " + MAX_NODES + " nodes");
+        this.first = first;
+        this.last = last;
+        this.step = step;
+        this.factor = factor;
+    }
+
+    /**
+     * Tamanos <code>first, first + step, first + 2 * step...</code> sin pasar de <code>last</code>.
+     */
+    public static SizeSweep linear(int first, int last, int step) {
+        if (step < 1)
+            throw new IllegalArgumentException("Step must be at least 1");
+        return new SizeSweep(first, last, step, 1);
+    }
+
+    /**
+     * Tamanos <code>first, first * factor, first * factor^2...</code>, redondeados y sin pasar de
+     * <code>last</code>. Cada tamano tiene al menos un nodo mas que el anterior.
+     */
+    public static SizeSweep geometric(int first, int last, double factor) {
+        if (!(factor > 1))
+            throw new IllegalArgumentException("Factor must be greater than 1");
+        return new SizeSweep(first, last, 0, factor);
+    }
+
+    public int[] sizes() {
+        var sizes = new int[16];
+        int count = 0;
+        for (long n = first; n <= last; n = next(n)) {
+            if (count == sizes.length)
+                sizes = Arrays.copyOf(sizes, count * 2);
+            sizes[count++] = (int) n;
+        }
+        return Arrays.copyOf(sizes, count);
+    }
+
+    private long next(long n) {
+        return step > 0 ? n + step : Math.max(n + 1, Math.round(n * factor));
+    }
+}
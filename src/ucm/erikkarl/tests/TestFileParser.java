@@ -1,68 +1,36 @@
 package ucm.erikkarl.tests;
 
-import ucm.erikkarl.graph.Graph;
+import ucm.erikkarl.graph.CompactGraph;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.stream.Collectors;
-
-import static ucm.erikkarl.tests.TestManager.START_OF_GRAPH;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 final class TestFileParser {
     private TestFileParser() {
     }
 
     /**
-     * Lee un fichero de test y crea una lista de grafos.
+     * Lee un fichero de test grafo a grafo con un {@link GraphFileReader}. Solo se tiene en memoria el
+     * grafo que se esta procesando, asi que sirve para ficheros mucho mas grandes que la memoria
+     * disponible. Hay que cerrar el <code>Stream</code> para cerrar el fichero.
+     *
+     * @throws IOException Si no se puede abrir el fichero. Los errores al leerlo se lanzan como
+     *                     {@link UncheckedIOException}.
      */
-    static List<Graph<Integer>> parse(File file) {
-        var graphs = new LinkedList<Graph<Integer>>();
-        var testCases = new LinkedList<List<String>>();
-        testCases.add(new LinkedList<>());
-
-        try (var br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (!line.trim().equals(START_OF_GRAPH))
-                    testCases.getLast().add(line.trim());
-                else
-                    testCases.add(new LinkedList<>());
+    static Stream<CompactGraph> stream(File file) throws IOException {
+        var reader = new GraphFileReader(file);
+        var spliterator = Spliterators.spliteratorUnknownSize(reader, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        } catch (IOException e) {
-            System.err.println("Error while reading tests file");
-        }
-        testCases.removeFirst();  // the first element is an empty string
-        for (List<String> testLine : testCases) {
-            graphs.add(parseGraph(testLine));
-        }
-        return graphs;
-    }
-
-    /**
-     * Crea un grafo a partir de una lista de lineas de texto que lo
-     * representa.
-     */
-    private static Graph<Integer> parseGraph(List<String> testCaseLines) {
-        var graph = new Graph<Integer>();
-        var iterator = testCaseLines.iterator();
-
-        while (iterator.hasNext()) {
-            var node = Integer.valueOf(iterator.next());
-            var adjacentsString = iterator.next();
-            var adjacents = new LinkedList<Integer>();
-
-            if (!adjacentsString.equals(""))
-                adjacents = List.of(adjacentsString.split(" "))
-                        .stream()
-                        .map(Integer::valueOf)
-                        .collect(Collectors.toCollection(LinkedList::new));
-
-            graph.addEdges(node, adjacents);
-        }
-        return graph;
+        });
     }
 }
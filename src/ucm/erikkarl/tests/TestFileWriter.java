@@ -0,0 +1,39 @@
+package ucm.erikkarl.tests;
+
+import ucm.erikkarl.graph.AdjacencySink;
+import ucm.erikkarl.graph.Graph;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Escribe ficheros de test en el mismo formato que {@link TestManager#graphToString(Graph)}, pero
+ * directamente en el fichero y sin crear cadenas de texto. Los grafos pueden escribirse enteros o
+ * nodo a nodo, empezando cada uno con {@link #startGraph()} y pasando despues sus nodos a
+ * {@link #accept(int, int[], int)}.
+ */
+final class TestFileWriter extends ChannelWriter implements AdjacencySink {
+    TestFileWriter(File file) throws IOException {
+        super(file);
+    }
+
+    void startGraph() throws IOException {
+        write(TestManager.START_OF_GRAPH).write('\n');
+    }
+
+    /**
+     * Escribe un nodo y la linea con sus nodos adyacentes.
+     */
+    @Override
+    public void accept(int node, int[] adjacents, int count) throws IOException {
+        write(node).write('\n');
+        for (int i = 0; i < count; i++)
+            write(adjacents[i]).write(' ');
+        write('\n');
+    }
+
+    void writeGraph(Graph<Integer> graph) throws IOException {
+        startGraph();
+        Graph.forEachAdjacency(graph, this);
+    }
+}
@@ -1,11 +1,16 @@
 package ucm.erikkarl.tests;
 
+import ucm.erikkarl.exercise4.Exercise4;
+import ucm.erikkarl.exercise4.SolveCache;
 import ucm.erikkarl.graph.Graph;
+import ucm.erikkarl.graph.IndexedGraph;
+import ucm.erikkarl.graph.OffHeapGraph;
 
 import java.io.File;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Clase encargada de leer ficheros de test, crear grafos a partir de ellos
@@ -15,6 +20,26 @@ import java.util.Set;
  */
 public final class TestManager {
     public static final String START_OF_GRAPH = "graph:";
+    /**
+     * Numero maximo de nodos que suman las soluciones guardadas en {@link #getSolveCache()}.
+     */
+    private static final long SOLVE_CACHE_CAPACITY = 1L << 23;
+    private static final SolveCache solveCache = new SolveCache(SOLVE_CACHE_CAPACITY);
+    /**
+     * Directorio donde se guardan los resultados de los tests entre ejecuciones del programa.
+     */
+    private static final File RESULT_STORE_DIRECTORY = new File(".results");
+    /**
+     * Tamano maximo aproximado en bytes de los resultados guardados en {@link #RESULT_STORE_DIRECTORY}.
+     */
+    private static final long RESULT_STORE_CAPACITY = 256L << 20;
+    /**
+     * Almacen de resultados, que se abre la primera vez que se necesita. Es <code>null</code> si aun
+     * no se ha abierto o no se ha podido abrir.
+     */
+    private static ResultStore resultStore;
+    private static boolean resultStoreOpened = false;
+    private static volatile boolean reuseStoredResults = false;
 
     private TestManager() {
     }
@@ -23,19 +48,202 @@ public final class TestManager {
      * Lee el test del fichero con nombre <code>fileName</code>, ejecuta el test y
      * devuelve los resultados en un <code>Optional</code>. Si el fichero
      * no existe devuelve un <code>Optional</code> vacio.
+     * <p>
+     * Los grafos se leen y se resuelven de uno en uno, asi que no hace falta tener
+     * el fichero entero en memoria. Acepta tanto ficheros de texto como ficheros
+     * binarios creados con {@link #convertToBinary(String, String)}, que se distinguen
+     * por su cabecera.
+     * <p>
+     * Los resultados se guardan en {@link #RESULT_STORE_DIRECTORY}. Solo si se activa con
+     * {@link #setReuseStoredResults(boolean)}, los grafos que ya se resolvieron en una ejecucion
+     * anterior, con sus tiempos medidos, no se vuelven a resolver ni a medir.
+     * <p>
+     * Si {@link PipelineMetrics} esta activado, guarda tambien las metricas de cada fase del test.
      */
     public static Optional<TestResults> runTest(String fileName) {
+        return runTest(fileName, 1);
+    }
+
+    /**
+     * Igual que {@link #runTest(String)} pero resolviendo hasta <code>threads</code> grafos a la
+     * vez. Las soluciones se guardan en el mismo orden que los grafos del fichero, pero el tiempo
+     * de cada caso puede verse afectado por los demas hilos. Para medir tiempos sin interferencias
+     * hay que usar un solo hilo.
+     */
+    public static Optional<TestResults> runTest(String fileName, int threads) {
+        return runTest(fileName, threads, true);
+    }
+
+    /**
+     * Igual que {@link #runTest(String, int)}, pero si <code>measureTimes</code> es falso no mide
+     * cuanto cuesta resolver cada grafo: resuelve cada uno una sola vez y usa
+     * {@link #getSolveCache()} para no resolver de nuevo grafos repetidos, tambien de tests
+     * anteriores. Aprovecha cualquier resultado guardado, se midieran o no sus tiempos.
+     */
+    public static Optional<TestResults> runTest(String fileName, int threads, boolean measureTimes) {
         File file = new File(fileName);
         if (file.exists()) {
-            TestResults results = TestRunner.run(TestFileParser.parse(file));
-            TestResultsWriter.writeSolutionsToFile(results, file);
-            TestResultsWriter.writeExecutionTimeToFile(results, file);
-            return Optional.of(results);
+            var store = getResultStore();
+            boolean reuse = !measureTimes || reuseStoredResults;
+            PipelineMetrics.reset();
+            try (var writer = new TestResultsWriter(file)) {
+                try (var graphs = BinaryTestFile.isBinary(file)
+                        ? BinaryTestFile.stream(file)
+                        : TestFileParser.stream(file)) {
+                    TestRunner.run(graphs, threads, measureTimes ? null : solveCache, store, reuse, writer);
+                } catch (IOException | UncheckedIOException | NumberFormatException e) {
+                    System.err.println("Error while reading tests file");
+                }
+                if (store != null) {
+                    try {
+                        store.flush();
+                    } catch (IOException e) {
+                        System.err.println("Error while saving results");
+                    }
+                }
+                return Optional.of(finish(writer, file));
+            }
         } else {
             return Optional.empty();
         }
     }
 
+    /**
+     * Igual que {@link #runTest(String, int, boolean)} con un hilo y sin medir tiempos, pero copia
+     * cada grafo fuera del heap en un {@link OffHeapGraph} y lo resuelve con
+     * {@link Exercise4#solveIndexed(IndexedGraph)}. Los grafos de los ficheros binarios se copian
+     * directamente del fichero, sin pasar por el heap, asi que pueden ser mas grandes que este.
+     * No usa la cache de soluciones ni los resultados guardados.
+     */
+    public static Optional<TestResults> runTestOffHeap(String fileName) {
+        File file = new File(fileName);
+        if (!file.exists())
+            return Optional.empty();
+
+        PipelineMetrics.reset();
+        try (var writer = new TestResultsWriter(file)) {
+            try (var graphs = BinaryTestFile.isBinary(file)
+                    ? BinaryTestFile.streamOffHeap(file)
+                    : TestFileParser.stream(file).map(OffHeapGraph::copyOf)) {
+                TestRunner.runIndexed(graphs, writer);
+            } catch (IOException | UncheckedIOException | NumberFormatException e) {
+                System.err.println("Error while reading tests file");
+            }
+            return Optional.of(finish(writer, file));
+        }
+    }
+
+    /**
+     * Igual que {@link #runTest(String, int, boolean)} sin medir tiempos, pero resuelve los grafos de
+     * uno en uno repartiendo cada grafo entre <code>threads</code> hilos con
+     * {@link Exercise4#solveInParallel(ucm.erikkarl.graph.CompactGraph, ForkJoinPool)}. Sirve para tests
+     * con pocos grafos muy grandes. No usa la cache de soluciones ni los resultados guardados.
+     */
+    public static Optional<TestResults> runTestSplittingGraphs(String fileName, int threads) {
+        File file = new File(fileName);
+        if (!file.exists())
+            return Optional.empty();
+
+        PipelineMetrics.reset();
+        var pool = new ForkJoinPool(Math.max(1, threads));
+        try (var writer = new TestResultsWriter(file)) {
+            try (var graphs = BinaryTestFile.isBinary(file)
+                    ? BinaryTestFile.stream(file)
+                    : TestFileParser.stream(file)) {
+                TestRunner.runInParallel(graphs, pool, writer);
+            } catch (IOException | UncheckedIOException | NumberFormatException e) {
+                System.err.println("Error while reading tests file");
+            } finally {
+                pool.shutdown();
+            }
+            return Optional.of(finish(writer, file));
+        }
+    }
+
+    /**
+     * Termina de escribir las soluciones y los tiempos del test del fichero <code>file</code>, que
+     * <code>writer</code> ha ido escribiendo segun se resolvia cada grafo, y si estan activadas
+     * escribe las metricas. Si la lectura del fichero ha fallado se guardan los casos resueltos
+     * hasta entonces.
+     */
+    private static TestResults finish(TestResultsWriter writer, File file) {
+        var results = writer.finish();
+        if (PipelineMetrics.isEnabled())
+            TestResultsWriter.writeMetricsToFile(results, file);
+        return results;
+    }
+
+    /**
+     * Cache de soluciones compartida por todos los tests que se ejecutan sin medir tiempos.
+     */
+    public static SolveCache getSolveCache() {
+        return solveCache;
+    }
+
+    public static boolean isReusingStoredResults() {
+        return reuseStoredResults;
+    }
+
+    /**
+     * Indica si los tests que miden tiempos aprovechan los resultados medidos en ejecuciones
+     * anteriores en vez de medir de nuevo los grafos. Por defecto se miden siempre.
+     */
+    public static void setReuseStoredResults(boolean reuse) {
+        reuseStoredResults = reuse;
+    }
+
+    /**
+     * Borra los resultados guardados de ejecuciones anteriores, de modo que todos los grafos se
+     * vuelvan a resolver.
+     *
+     * @return Si se han podido borrar.
+     */
+    public static boolean clearStoredResults() {
+        var store = getResultStore();
+        if (store == null)
+            return false;
+        try {
+            store.clear();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error while removing stored results");
+            return false;
+        }
+    }
+
+    private static synchronized ResultStore getResultStore() {
+        if (!resultStoreOpened) {
+            resultStoreOpened = true;
+            try {
+                resultStore = ResultStore.open(RESULT_STORE_DIRECTORY, RESULT_STORE_CAPACITY);
+            } catch (IOException e) {
+                System.err.println("Error while opening stored results, graphs will be solved again");
+            }
+        }
+        return resultStore;
+    }
+
+    /**
+     * Convierte el fichero de test de texto <code>fileName</code> en un fichero binario
+     * <code>binaryFileName</code> que se puede ejecutar con {@link #runTest(String)} sin
+     * tener que analizar el texto de nuevo. Si el fichero no existe o no se puede
+     * convertir devuelve un <code>Optional</code> vacio.
+     *
+     * @return Numero de grafos convertidos.
+     */
+    public static Optional<Integer> convertToBinary(String fileName, String binaryFileName) {
+        File file = new File(fileName);
+        if (!file.exists())
+            return Optional.empty();
+
+        try (var graphs = TestFileParser.stream(file)) {
+            return Optional.of(BinaryTestFile.write(graphs, new File(binaryFileName)));
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error while converting tests file");
+            return Optional.empty();
+        }
+    }
+
     /**
      * Devuelve una representacion como cadena de texto de un grafo.
      */
@@ -43,11 +251,16 @@ public final class TestManager {
         var sb = new StringBuilder();
         sb.append(TestManager.START_OF_GRAPH).append('\n');
 
-        for (Map.Entry<Integer, Set<Integer>> entry : graph) {
-            sb.append(entry.getKey()).append('\n');
-            for (Integer n : entry.getValue())
-                sb.append(n).append(' ');
-            sb.append('\n');
+        try {
+            Graph.forEachAdjacency(graph, (node, adjacents, count) -> {
+                sb.append(node).append('\n');
+                for (int i = 0; i < count; i++)
+                    sb.append(adjacents[i]).append(' ');
+                sb.append('\n');
+            });
+        } catch (IOException e) {
+            // Escribir en un StringBuilder no lanza excepciones
+            throw new UncheckedIOException(e);
         }
         return sb.toString();
     }
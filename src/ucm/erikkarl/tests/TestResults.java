@@ -1,48 +1,44 @@
 package ucm.erikkarl.tests;
 
 import ucm.erikkarl.Either;
+import ucm.erikkarl.exercise4.SolveResult;
 
 import java.util.List;
 
 /**
  * Clase que encapsula datos sobre la ejecucion de un test. Incluye el tiempo de ejecucion,
- * el numero de casos, el fichero donde se guardan los resultados y las soluciones obtenidas
- * con cada grafo.<p>
+ * el numero de casos y los ficheros donde se guardan los resultados. Las soluciones de cada
+ * grafo, en {@link Result}, se escriben en esos ficheros segun se calculan y no se guardan aqui.<p>
  * Los tiempos se miden en nanosegundos para poder calcular los milisegundos con decimales si
  * asi lo desea el usuario.
  */
 public final class TestResults {
-    private final float totalMediumElapsedTime;
+    private final float totalMeanElapsedTime;
     private final int numberOfCases;
-    private final List<Result> results;
     private String solutionsFileName;
     private String executionTimeFileName;
+    private String metricsFileName;
 
-    TestResults(float totalElapsedTime, int numberOfCases, List<Result> results) {
-        this.totalMediumElapsedTime = totalElapsedTime;
+    TestResults(float totalElapsedTime, int numberOfCases) {
+        this.totalMeanElapsedTime = totalElapsedTime;
         this.numberOfCases = numberOfCases;
-        this.results = results;
     }
 
     /**
      * @return Tiempo medio de ejecucion de cada test en nanosegundos.
      */
-    public final float mediumElapsedTimePerCase() {
-        return this.numberOfCases > 0 ? this.totalMediumElapsedTime / (long) this.numberOfCases : 0f;
+    public final float meanElapsedTimePerCase() {
+        return this.numberOfCases > 0 ? this.totalMeanElapsedTime / (long) this.numberOfCases : 0f;
     }
 
-    public final float getTotalMediumElapsedTime() {
-        return this.totalMediumElapsedTime;
+    public final float getTotalMeanElapsedTime() {
+        return this.totalMeanElapsedTime;
     }
 
     public final int getNumberOfCases() {
         return this.numberOfCases;
     }
 
-    public final List<Result> getResults() {
-        return this.results;
-    }
-
     public String getSolutionsFileName() {
         return solutionsFileName;
     }
@@ -59,32 +55,62 @@ public final class TestResults {
         this.executionTimeFileName = executionTimeFileName;
     }
 
+    /**
+     * @return Nombre del fichero JSON con las metricas del test, o <code>null</code> si no se han
+     * guardado.
+     */
+    public String getMetricsFileName() {
+        return metricsFileName;
+    }
+
+    public void setMetricsFileName(String metricsFileName) {
+        this.metricsFileName = metricsFileName;
+    }
+
     /**
      * Contiene el tiempo necesario para calcular la solucion
      * del algoritmo y la solucion misma representada como una
      * cadena de texto.
      */
     public static final class Result {
-        private final double meanTimeElapsed;
-        private final List<Either<Integer, List<Integer>>> result;
+        private final TimingStatistics timing;
+        private final SolveResult result;
         private final int graphNodesNumber;
         private final int graphEdgesNumber;
 
-        public Result(float time,
-                      List<Either<Integer, List<Integer>>> result,
+        public Result(TimingStatistics timing,
+                      SolveResult result,
                       int graphNodesNumber,
                       int graphEdgesNumber) {
-            meanTimeElapsed = time;
+            this.timing = timing;
             this.result = result;
             this.graphNodesNumber = graphNodesNumber;
             this.graphEdgesNumber = graphEdgesNumber;
         }
 
         public double getMeanTimeElapsed() {
-            return meanTimeElapsed;
+            return timing.getMean();
         }
 
+        public TimingStatistics getTiming() {
+            return timing;
+        }
+
+        public Result(TimingStatistics timing,
+                      List<Either<Integer, List<Integer>>> result,
+                      int graphNodesNumber,
+                      int graphEdgesNumber) {
+            this(timing, SolveResult.fromList(result), graphNodesNumber, graphEdgesNumber);
+        }
+
+        /**
+         * Devuelve la solucion como una vista de {@link #getSolveResult()}, sin copiarla.
+         */
         public List<Either<Integer, List<Integer>>> getResult() {
+            return result.asList();
+        }
+
+        public SolveResult getSolveResult() {
             return result;
         }
 
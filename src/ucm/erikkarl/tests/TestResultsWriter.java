@@ -1,54 +1,274 @@
 package ucm.erikkarl.tests;
 
+import ucm.erikkarl.exercise4.SolveResult;
+import ucm.erikkarl.jfr.ResultsWriteEvent;
+
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Escribe los resultados de un test segun se van calculando con un {@link ChannelWriter}, sin crear
+ * cadenas de texto con las soluciones ni con cada linea y sin guardar las soluciones en memoria, de
+ * modo que la memoria usada no depende del tamano de los resultados ni del numero de casos.
+ * <p>
+ * El fichero de soluciones empieza con los totales del test, que solo se conocen al final, asi que
+ * las soluciones se escriben antes en un fichero temporal y {@link #finish()} las copia detras de
+ * los totales con {@link FileChannel#transferTo}. El fichero de tiempos se escribe directamente.
+ * Si no se puede escribir en alguno de los ficheros se avisa una vez y se sigue con el otro.
+ */
+final class TestResultsWriter implements Consumer<TestResults.Result>, Closeable {
+    private final String solutionsFileName;
+    private final String executionTimeFileName;
+    private final File solutionsBodyFile;
+    private final ResultsWriteEvent solutionsEvent = new ResultsWriteEvent();
+    private final ResultsWriteEvent executionTimeEvent = new ResultsWriteEvent();
+    /**
+     * Soluciones de cada caso sin los totales, o <code>null</code> si no se han podido escribir.
+     */
+    private ChannelWriter solutionsBody;
+    /**
+     * Fichero de tiempos, o <code>null</code> si no se ha podido escribir.
+     */
+    private ChannelWriter executionTime;
+    private float totalElapsedTimeInMs = 0;
+    private int cases = 0;
+
+    /**
+     * Empieza a escribir los resultados del test del fichero <code>originalFile</code> en ficheros
+     * nuevos cuyos nombres se forman a partir del suyo.
+     */
+    TestResultsWriter(File originalFile) {
+        String baseName = ridOfExtension(originalFile.getName());
+        solutionsFileName = baseName + "-result.txt";
+        executionTimeFileName = baseName + "-times.txt";
+        solutionsBodyFile = new File(solutionsFileName + ".tmp");
+
+        solutionsEvent.begin();
+        try {
+            solutionsBody = new ChannelWriter(solutionsBodyFile);
+        } catch (IOException e) {
+            solutionsBody = null;
+            System.err.println("Error: cannot write results to " + solutionsFileName);
+        }
+        executionTimeEvent.begin();
+        try {
+            executionTime = new ChannelWriter(new File(executionTimeFileName));
+            executionTime.write("# Nodes\t Edges\t Time\t Min\t Median\t P90\t P99\t StdDev\t Iterations\t Bytes\n");
+        } catch (IOException e) {
+            closeExecutionTime();
+        }
+    }
 
-final class TestResultsWriter {
-    private TestResultsWriter() {
+    /**
+     * Escribe el resultado del siguiente caso del test.
+     */
+    @Override
+    public void accept(TestResults.Result result) {
+        var timer = PipelineMetrics.start(PipelineMetrics.Phase.WRITE);
+        cases++;
+        totalElapsedTimeInMs += result.getMeanTimeElapsed();
+        if (solutionsBody != null) {
+            try {
+                solutionsBody.write("Time: ").writeDecimal(result.getMeanTimeElapsed()).write(" ms\n");
+                solutionsBody.write("Result: ");
+                writeSolution(result.getSolveResult(), solutionsBody);
+                solutionsBody.write("\n\n");
+            } catch (IOException e) {
+                closeSolutions();
+            }
+        }
+        if (executionTime != null) {
+            try {
+                writeExecutionTime(result, executionTime);
+            } catch (IOException e) {
+                closeExecutionTime();
+            }
+        }
+        timer.stop();
     }
 
     /**
-     * Escribe los resultados del test en un fichero nuevo cuyo nombre se forma a partir del
-     * de <code>originalFile</code>.
+     * Termina de escribir los ficheros con los casos recibidos hasta ahora.
+     *
+     * @return Los totales del test, con el nombre de cada fichero que se ha podido escribir.
      */
-    static void writeSolutionsToFile(TestResults testResults, File originalFile) {
-        String solutionsFileName = ridOfExtension(originalFile.getName()) + "-result.txt";
-
-        try (var solutionsFile = new FileWriter(solutionsFileName)) {
-            var resultsStrBuilder = new StringBuilder();
-            for (TestResults.Result result : testResults.getResults()) {
-                resultsStrBuilder.append("Time: ").append(result.getMeanTimeElapsed()).append(" ms\n");
-                resultsStrBuilder.append("Result: ").append(result.getResultAsString()).append("\n\n");
+    TestResults finish() {
+        var timer = PipelineMetrics.start(PipelineMetrics.Phase.WRITE);
+        var results = new TestResults(totalElapsedTimeInMs, cases);
+        if (solutionsBody != null) {
+            try {
+                solutionsBody.close();
+                solutionsBody = null;
+                writeSolutionsFile(results);
+                results.setSolutionsFileName(solutionsFileName);
+            } catch (IOException e) {
+                closeSolutions();
+            }
+            commit(solutionsEvent, solutionsFileName, results);
+        }
+        if (executionTime != null) {
+            try {
+                executionTime.close();
+                executionTime = null;
+                results.setExecutionTimeFileName(executionTimeFileName);
+            } catch (IOException e) {
+                closeExecutionTime();
             }
-            solutionsFile.write(prelude(testResults) + resultsStrBuilder.toString());
-            testResults.setSolutionsFileName(solutionsFileName);
+            commit(executionTimeEvent, executionTimeFileName, results);
+        }
+        deleteSolutionsBody();
+        timer.stop();
+        return results;
+    }
 
+    /**
+     * Cierra los ficheros sin terminarlos, si no se ha llamado a {@link #finish()}.
+     */
+    @Override
+    public void close() {
+        if (solutionsBody != null) {
+            try {
+                solutionsBody.close();
+            } catch (IOException e) {
+                // Se borra a continuacion
+            }
+            solutionsBody = null;
+        }
+        deleteSolutionsBody();
+        if (executionTime != null) {
+            try {
+                executionTime.close();
+            } catch (IOException e) {
+                System.err.println("Error: cannot write results to " + executionTimeFileName);
+            }
+            executionTime = null;
+        }
+    }
+
+    /**
+     * Escribe el valor actual de {@link PipelineMetrics} en dos ficheros nuevos cuyos nombres se forman
+     * a partir del de <code>originalFile</code>, uno en JSON y otro en el formato de texto de Prometheus.
+     */
+    static void writeMetricsToFile(TestResults results, File originalFile) {
+        String metricsFileName = ridOfExtension(originalFile.getName()) + "-metrics";
+
+        var event = new ResultsWriteEvent();
+        event.begin();
+        try (var jsonFile = new ChannelWriter(new File(metricsFileName + ".json"));
+             var prometheusFile = new ChannelWriter(new File(metricsFileName + ".prom"))) {
+            PipelineMetrics.writeJson(jsonFile);
+            PipelineMetrics.writePrometheus(prometheusFile);
+            results.setMetricsFileName(metricsFileName + ".json");
         } catch (IOException e) {
-            System.err.println("Error: cannot write results to " + solutionsFileName);
+            System.err.println("Error: cannot write metrics to " + metricsFileName);
+        }
+        commit(event, metricsFileName, results);
+    }
+
+    /**
+     * Escribe los totales del test en el fichero de soluciones y copia detras las soluciones de
+     * cada caso.
+     */
+    private void writeSolutionsFile(TestResults results) throws IOException {
+        var file = new File(solutionsFileName);
+        try (var prelude = new ChannelWriter(file)) {
+            writePrelude(results, prelude);
+        }
+        try (var source = FileChannel.open(solutionsBodyFile.toPath(), StandardOpenOption.READ);
+             var target = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = 0;
+            long size = source.size();
+            while (position < size)
+                position += source.transferTo(position, size - position, target);
         }
     }
 
     /**
-     * Escribe en una columna el numero de nodos de cada grafo y en otra el tiempo de ejecucion
-     * del algoritmo. El fichero deberia poder ser leido por gnuplot.
+     * Escribe en una columna el numero de nodos del grafo y en otra el tiempo medio de ejecucion
+     * del algoritmo, seguidas de las demas estadisticas de {@link TimingStatistics}. El fichero deberia
+     * poder ser leido por gnuplot.
+     */
+    private static void writeExecutionTime(TestResults.Result result, ChannelWriter file) throws IOException {
+        var timing = result.getTiming();
+        file.write(result.getGraphNodesNumber()).write("\t ")
+                .write(result.getGraphEdgesNumber()).write("\t ")
+                .writeDecimal(timing.getMean()).write("\t ")
+                .writeDecimal(timing.getMin()).write("\t ")
+                .writeDecimal(timing.getMedian()).write("\t ")
+                .writeDecimal(timing.getP90()).write("\t ")
+                .writeDecimal(timing.getP99()).write("\t ")
+                .writeDecimal(timing.getStandardDeviation()).write("\t ")
+                .write(timing.getIterations()).write("\t ")
+                .write(timing.getAllocatedBytesPerIteration()).write('\n');
+    }
+
+    /**
+     * Escribe la solucion igual que la escribiria el <code>toString()</code> de su lista de
+     * {@link ucm.erikkarl.Either}, pero leyendo directamente los arrays de {@link SolveResult}.
      */
-    static void writeExecutionTimeToFile(TestResults results, File originalFile) {
-        String executionTimeFileName = ridOfExtension(originalFile.getName()) + "-times.txt";
-
-        try (var executionTimeFile = new FileWriter(executionTimeFileName)) {
-            executionTimeFile.write("# Nodes\t Edges\t Time\n");
-
-            for (TestResults.Result result : results.getResults()) {
-                var line = String.format("%d\t %d\t %f%n",
-                        result.getGraphNodesNumber(),
-                        result.getGraphEdgesNumber(),
-                        result.getMeanTimeElapsed());
-                executionTimeFile.write(line);
+    private static void writeSolution(SolveResult solution, ChannelWriter file) throws IOException {
+        file.write('[');
+        for (int c = 0; c < solution.getNumberOfComponents(); c++) {
+            if (c > 0)
+                file.write(", ");
+
+            int start = solution.componentStart(c);
+            int end = solution.componentEnd(c);
+            if (end - start > 1) {
+                file.write('[');
+                for (int i = start; i < end; i++) {
+                    if (i > start)
+                        file.write(", ");
+                    file.write(solution.node(i));
+                }
+                file.write(']');
+            } else {
+                file.write(solution.node(start));
             }
-            results.setExecutionTimeFileName(executionTimeFileName);
+        }
+        file.write(']');
+    }
+
+    private void closeSolutions() {
+        System.err.println("Error: cannot write results to " + solutionsFileName);
+        try {
+            if (solutionsBody != null)
+                solutionsBody.close();
+        } catch (IOException e) {
+            // Ya se ha avisado del error
+        }
+        solutionsBody = null;
+    }
+
+    private void closeExecutionTime() {
+        System.err.println("Error: cannot write results to " + executionTimeFileName);
+        try {
+            if (executionTime != null)
+                executionTime.close();
         } catch (IOException e) {
-            System.err.println("Error: cannot write results to " + executionTimeFileName);
+            // Ya se ha avisado del error
+        }
+        executionTime = null;
+    }
+
+    private void deleteSolutionsBody() {
+        try {
+            Files.deleteIfExists(solutionsBodyFile.toPath());
+        } catch (IOException e) {
+            System.err.println("Error: cannot remove " + solutionsBodyFile);
+        }
+    }
+
+    private static void commit(ResultsWriteEvent event, String fileName, TestResults results) {
+        if (event.shouldCommit()) {
+            event.file = fileName;
+            event.cases = results.getNumberOfCases();
+            event.commit();
         }
     }
 
@@ -60,13 +280,9 @@ final class TestResultsWriter {
         return fileName;
     }
 
-    private static String prelude(TestResults results) {
-        String preludeString = "# Total elapsed time: %f ms\n" +
-                "# Total number of cases: %d\n" +
-                "# Medium elapsed time per case: %f ms\n";
-        return String.format(preludeString,
-                results.getTotalMediumElapsedTime(),
-                results.getNumberOfCases(),
-                results.mediumElapsedTimePerCase());
+    private static void writePrelude(TestResults results, ChannelWriter file) throws IOException {
+        file.write("# Total elapsed time: ").writeDecimal(results.getTotalMeanElapsedTime()).write(" ms\n");
+        file.write("# Total number of cases: ").write(results.getNumberOfCases()).write('\n');
+        file.write("# Mean elapsed time per case: ").writeDecimal(results.meanElapsedTimePerCase()).write(" ms\n");
     }
 }
@@ -1,63 +1,272 @@
 package ucm.erikkarl.tests;
 
-import ucm.erikkarl.Either;
 import ucm.erikkarl.exercise4.Exercise4;
-import ucm.erikkarl.graph.Graph;
+import ucm.erikkarl.exercise4.SolveCache;
+import ucm.erikkarl.exercise4.SolveResult;
+import ucm.erikkarl.graph.CompactGraph;
+import ucm.erikkarl.graph.GraphFingerprint;
+import ucm.erikkarl.graph.IndexedGraph;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 final class TestRunner {
-    private static final int MS_LIMIT = 10;
-    private static final long NS_LIMIT = MS_LIMIT * 1000000L;
+    /**
+     * Grafos que puede haber leidos y sin escribir por cada hilo que los resuelve.
+     */
+    private static final int PENDING_PER_THREAD = 2;
+    /**
+     * Marca el final de la cola de resultados pendientes.
+     */
+    private static final Future<TestResults.Result> END = CompletableFuture.completedFuture(null);
 
     private TestRunner() {
     }
 
     /**
-     * Ejecuta el algoritmo sobre los grafos de la lista <code>graphs</code>.
+     * Resuelve una sola vez cada grafo de <code>graphs</code> con
+     * {@link Exercise4#solveIndexed(IndexedGraph)}, sin cache ni almacen de resultados. Con grafos
+     * fuera del heap, como los de {@link BinaryTestFile#streamOffHeap(java.io.File)}, ni los grafos ni
+     * el estado del algoritmo ocupan el heap. El tiempo de cada caso es el de esa unica ejecucion.
+     */
+    static void runIndexed(Stream<? extends IndexedGraph> graphs, Consumer<TestResults.Result> results) {
+        solveEach(graphs, Exercise4::solveIndexed, results);
+    }
+
+    /**
+     * Resuelve una sola vez cada grafo de <code>graphs</code> con
+     * {@link Exercise4#solveInParallel(CompactGraph, ForkJoinPool)}, que reparte cada grafo entre los
+     * hilos de <code>pool</code> en vez de resolver varios grafos a la vez. Sirve para tests con pocos
+     * grafos muy grandes. El tiempo de cada caso es el de esa unica ejecucion.
+     */
+    static void runInParallel(Stream<CompactGraph> graphs, ForkJoinPool pool, Consumer<TestResults.Result> results) {
+        solveEach(graphs, graph -> SolveResult.fromList(Exercise4.solveInParallel(graph, pool)), results);
+    }
+
+    /**
+     * Resuelve cada grafo de <code>graphs</code> una sola vez con <code>solver</code>, midiendo el
+     * tiempo de esa ejecucion.
+     */
+    private static <G extends IndexedGraph> void solveEach(Stream<? extends G> graphs,
+                                                           Function<? super G, SolveResult> solver,
+                                                           Consumer<TestResults.Result> results) {
+        var iterator = graphs.iterator();
+        for (G graph = nextGraph(iterator); graph != null; graph = nextGraph(iterator)) {
+            countGraph(graph);
+            var timer = PipelineMetrics.start(PipelineMetrics.Phase.SOLVE);
+            long startTime = System.nanoTime();
+            var solution = solver.apply(graph);
+            long elapsedTime = System.nanoTime() - startTime;
+            timer.stop();
+            countSolution(graph, solution);
+
+            var timing = TimingStatistics.of(new long[]{elapsedTime}, 1, TimingStatistics.ALLOCATION_UNKNOWN);
+            results.accept(new TestResults.Result(timing, solution, graph.getNumberOfNodes(), graph.getNumberOfEdges()));
+        }
+    }
+
+    /**
+     * Resuelve los grafos de uno en uno en el hilo que llama.
+     */
+    private static void runSequentially(Stream<CompactGraph> graphs, SolveCache cache, ResultStore store,
+                                        boolean reuse, Consumer<TestResults.Result> results) {
+        var iterator = graphs.iterator();
+        for (var graph = nextGraph(iterator); graph != null; graph = nextGraph(iterator))
+            results.accept(runTest(graph, cache, store, reuse));
+    }
+
+    /**
+     * Ejecuta el algoritmo sobre los grafos de <code>graphs</code> en tres etapas encadenadas: el hilo
+     * que llama lee los grafos, <code>threads</code> hilos los resuelven a la vez y otro hilo recoge los
+     * resultados en el mismo orden en que se leyeron los grafos y se los pasa a <code>results</code>.
+     * Las etapas se comunican con una cola acotada, asi que nunca hay mas de unos pocos grafos y
+     * soluciones por hilo en memoria.
+     * <p>
+     * Los tiempos de cada caso se miden mientras otros grafos se resuelven a la vez, asi que pueden
+     * verse afectados por los demas hilos. Con <code>threads</code> igual a 1 los grafos se resuelven
+     * de uno en uno y los tiempos se miden sin interferencias.
+     *
+     * @param cache Cache de soluciones con la que no resolver dos veces el mismo grafo, o
+     *              <code>null</code> para medir con {@link TimingEngine} lo que cuesta resolver cada
+     *              grafo. Con cache el tiempo de cada caso es el de una sola ejecucion, que con un
+     *              grafo repetido es solo lo que cuesta encontrarlo en la cache.
+     * @param store Almacen en el que guardar los resultados, o <code>null</code> para no guardarlos.
+     * @param reuse Si se aprovechan los resultados de ejecuciones anteriores guardados en
+     *              <code>store</code> en vez de resolver de nuevo los grafos. Si se miden los tiempos
+     *              solo se aprovechan los resultados cuyos tiempos tambien se midieron.
+     * @param results Recibe el resultado de cada grafo, en el orden de <code>graphs</code>, en cuanto
+     *                se conoce, para que no haga falta tenerlos todos en memoria.
+     */
+    static void run(Stream<CompactGraph> graphs, int threads, SolveCache cache, ResultStore store,
+                    boolean reuse, Consumer<TestResults.Result> results) {
+        if (threads <= 1) {
+            runSequentially(graphs, cache, store, reuse, results);
+            return;
+        }
+
+        var solvers = Executors.newFixedThreadPool(threads);
+        var collector = Executors.newSingleThreadExecutor();
+        BlockingQueue<Future<TestResults.Result>> pending = new ArrayBlockingQueue<>(threads * PENDING_PER_THREAD);
+        try {
+            var collected = collector.submit(() -> collect(pending, results));
+            try {
+                var iterator = graphs.iterator();
+                for (var graph = nextGraph(iterator); graph != null; graph = nextGraph(iterator)) {
+                    var next = graph;
+                    pending.put(solvers.submit(() -> runTest(next, cache, store, reuse)));
+                }
+            } finally {
+                pending.put(END);
+            }
+            collected.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Test execution was interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof ExecutionException)
+                cause = cause.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            solvers.shutdownNow();
+            collector.shutdownNow();
+        }
+    }
+
+    /**
+     * Espera a cada resultado de <code>pending</code> en orden hasta encontrar {@link #END} y se lo pasa
+     * a <code>results</code>. Si algun grafo falla se cancelan los siguientes, pero se sigue vaciando
+     * la cola para no bloquear al hilo que lee los grafos.
      */
-    static TestResults run(List<Graph<Integer>> graphs) {
-        float totalElapsedTimeInMs = 0;
-        List<TestResults.Result> results = new LinkedList<>();
+    private static Void collect(BlockingQueue<Future<TestResults.Result>> pending,
+                                Consumer<TestResults.Result> results)
+            throws InterruptedException, ExecutionException {
+        ExecutionException failure = null;
 
-        for (Graph<Integer> graph : graphs) {
-            var result = runTest(graph);
-            results.add(result);
-            totalElapsedTimeInMs += result.getMeanTimeElapsed();
+        for (var next = pending.take(); next != END; next = pending.take()) {
+            if (failure != null) {
+                next.cancel(true);
+                continue;
+            }
+            try {
+                results.accept(next.get());
+            } catch (ExecutionException e) {
+                failure = e;
+            }
         }
+        if (failure != null)
+            throw failure;
+        return null;
+    }
 
-        return new TestResults(totalElapsedTimeInMs, graphs.size(), results);
+    /**
+     * Lee el siguiente grafo, que es cuando se analiza si <code>graphs</code> viene de un fichero, o
+     * devuelve <code>null</code> si no quedan mas.
+     */
+    private static <G> G nextGraph(Iterator<G> graphs) {
+        var timer = PipelineMetrics.start(PipelineMetrics.Phase.PARSE);
+        var graph = graphs.hasNext() ? graphs.next() : null;
+        timer.stop();
+        return graph;
     }
 
     /**
-     * Ejecuta el test sobre el grafo <code>graph</code> y devuelve su resultado.
+     * Ejecuta el test sobre el grafo <code>graph</code> y devuelve su resultado, midiendo los tiempos
+     * con {@link TimingEngine} si no hay <code>cache</code> o esta desactivada. Si <code>reuse</code> y
+     * <code>store</code> ya tiene un resultado valido para el grafo lo devuelve sin resolverlo, y si no
+     * guarda en el el resultado nuevo.
      */
-    private static TestResults.Result runTest(Graph<Integer> graph) {
-        List<Either<Integer, List<Integer>>> solution = new LinkedList<>();
-        long elapsedTimeInNs = 0;
-        int loops = 0;
-        int loopsLimit = 3;
-        boolean loopsLimitSet = false;
+    private static TestResults.Result runTest(CompactGraph graph, SolveCache cache, ResultStore store,
+                                              boolean reuse) {
+        countGraph(graph);
 
-        // Si el test dura menos de 10 ms, se repite 100 veces.
-        // Lo hacemos al menos 3 veces.
-        while (loops < loopsLimit) {
+        boolean measureTimes = cache == null || !cache.isEnabled();
+        GraphFingerprint fingerprint = null;
+        if (store != null || !measureTimes) {
+            var timer = PipelineMetrics.start(PipelineMetrics.Phase.LOOKUP);
+            fingerprint = GraphFingerprint.of(graph);
+            var stored = store != null && reuse
+                    ? store.get(fingerprint, measureTimes)
+                    : Optional.<TestResults.Result>empty();
+            timer.stop();
+            if (stored.isPresent()) {
+                PipelineMetrics.count(PipelineMetrics.Counter.STORED_RESULTS, 1);
+                countSolution(graph, stored.get().getSolveResult());
+                return stored.get();
+            }
+        }
+
+        TestResults.Result result;
+        var timer = PipelineMetrics.start(PipelineMetrics.Phase.SOLVE);
+        if (measureTimes) {
+            var solution = Exercise4.solveCompact(graph);
+            timer.stop();
+            timer = PipelineMetrics.start(PipelineMetrics.Phase.MEASURE);
+            var timing = TimingEngine.measure(() -> Exercise4.solveCompact(graph));
+            result = new TestResults.Result(timing, solution, graph.getNumberOfNodes(), graph.getNumberOfEdges());
+        } else {
             long startTime = System.nanoTime();
-            solution = Exercise4.solve(graph);
-            long finalTime = System.nanoTime();
-            elapsedTimeInNs += finalTime - startTime;
-            loops++;
-
-            if (!loopsLimitSet && (finalTime - startTime) < NS_LIMIT) {
-                loopsLimit = 100;
-                loopsLimitSet = true;
+            var solution = cache.solve(graph, fingerprint);
+            long elapsedTime = System.nanoTime() - startTime;
+            var timing = TimingStatistics.of(new long[]{elapsedTime}, 1, TimingStatistics.ALLOCATION_UNKNOWN);
+            result = new TestResults.Result(timing, solution, graph.getNumberOfNodes(), graph.getNumberOfEdges());
+        }
+        timer.stop();
+        countSolution(graph, result.getSolveResult());
+
+        if (store != null) {
+            timer = PipelineMetrics.start(PipelineMetrics.Phase.STORE);
+            try {
+                store.put(fingerprint, result, measureTimes);
+            } catch (IOException e) {
+                System.err.println("Error while saving a result");
             }
+            timer.stop();
         }
-        // Calculamos la media de los tiempos de ejecucion del test
-        elapsedTimeInNs /= loops;
-        float elapsedTimeInMs = (float) (elapsedTimeInNs / 1000000.0);
+        return result;
+    }
+
+    private static void countGraph(IndexedGraph graph) {
+        PipelineMetrics.count(PipelineMetrics.Counter.GRAPHS, 1);
+        PipelineMetrics.count(PipelineMetrics.Counter.NODES, graph.getNumberOfNodes());
+        PipelineMetrics.count(PipelineMetrics.Counter.EDGES, graph.getNumberOfEdges());
+    }
 
-        return new TestResults.Result(elapsedTimeInMs, solution, graph.getNumberOfNodes(), graph.getNumberOfEdges());
+    /**
+     * Cuenta las componentes de <code>solution</code> y, si <code>graph</code> tiene algun bucle, el
+     * grafo entre los ciclicos. Un nodo con una arista a si mismo forma una componente de un solo nodo,
+     * asi que en ese caso hay que buscar esas aristas en el grafo.
+     */
+    private static void countSolution(IndexedGraph graph, SolveResult solution) {
+        if (!PipelineMetrics.isEnabled())
+            return;
+        PipelineMetrics.count(PipelineMetrics.Counter.COMPONENTS, solution.getNumberOfComponents());
+        if (!solution.hasOnlySingletonComponents() || hasSelfLoop(graph))
+            PipelineMetrics.count(PipelineMetrics.Counter.CYCLIC_GRAPHS, 1);
+    }
+
+    private static boolean hasSelfLoop(IndexedGraph graph) {
+        for (int node = 0; node < graph.getNumberOfNodes(); node++) {
+            for (int e = graph.edgesStart(node); e < graph.edgesEnd(node); e++) {
+                if (graph.edgeTarget(e) == node)
+                    return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,101 @@
+package ucm.erikkarl.tests;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Mide el tiempo de ejecucion de una tarea en dos fases:
+ * <ol>
+ *     <li>Calentamiento: se ejecuta la tarea sin medirla durante al menos {@link #WARMUP_TIME_NS}
+ *     para que el compilador JIT la optimice antes de empezar a medir.</li>
+ *     <li>Medicion: se ejecuta la tarea hasta que el intervalo de confianza del 95% de la media es
+ *     menor que un {@link #TARGET_RELATIVE_ERROR} de la media, o hasta agotar
+ *     {@link #MEASUREMENT_TIME_NS} o {@link #MAX_ITERATIONS}.</li>
+ * </ol>
+ * Tambien mide la memoria reservada por el hilo durante la medicion, si la maquina virtual lo permite.
+ */
+final class TimingEngine {
+    private static final int MIN_WARMUP_ITERATIONS = 2;
+    private static final long WARMUP_TIME_NS = 20 * 1000000L;
+    private static final int MIN_ITERATIONS = 5;
+    private static final int MAX_ITERATIONS = 1000;
+    private static final long MEASUREMENT_TIME_NS = 250 * 1000000L;
+    private static final double TARGET_RELATIVE_ERROR = 0.05;
+    private static final double Z_95 = 1.96;
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+    /**
+     * Guarda el resultado de cada ejecucion para que el compilador JIT no pueda eliminarla.
+     */
+    @SuppressWarnings("unused")
+    private static volatile Object sink;
+
+    private TimingEngine() {
+    }
+
+    /**
+     * Calienta y mide <code>task</code>.
+     */
+    static TimingStatistics measure(Supplier<?> task) {
+        long warmupStart = System.nanoTime();
+        for (int i = 0; i < MIN_WARMUP_ITERATIONS || System.nanoTime() - warmupStart < WARMUP_TIME_NS; i++)
+            sink = task.get();
+
+        var samples = new long[64];
+        int count = 0;
+        // Suma de los tiempos y de sus cuadrados para calcular la varianza sin recorrer las muestras
+        double sum = 0;
+        double sumOfSquares = 0;
+        long allocatedBefore = allocatedBytes();
+        long measurementStart = System.nanoTime();
+
+        while (count < MIN_ITERATIONS
+                || (count < MAX_ITERATIONS
+                && System.nanoTime() - measurementStart < MEASUREMENT_TIME_NS
+                && !isPreciseEnough(count, sum, sumOfSquares))) {
+            long startTime = System.nanoTime();
+            sink = task.get();
+            long elapsed = System.nanoTime() - startTime;
+
+            if (count == samples.length)
+                samples = Arrays.copyOf(samples, count * 2);
+            samples[count++] = elapsed;
+            sum += elapsed;
+            sumOfSquares += (double) elapsed * elapsed;
+        }
+
+        long allocatedAfter = allocatedBytes();
+        long allocatedPerIteration = allocatedBefore == TimingStatistics.ALLOCATION_UNKNOWN
+                ? TimingStatistics.ALLOCATION_UNKNOWN
+                : (allocatedAfter - allocatedBefore) / count;
+        return TimingStatistics.of(samples, count, allocatedPerIteration);
+    }
+
+    private static boolean isPreciseEnough(int count, double sum, double sumOfSquares) {
+        double mean = sum / count;
+        double variance = Math.max(0, (sumOfSquares - sum * mean) / (count - 1));
+        double halfWidth = Z_95 * Math.sqrt(variance / count);
+        return halfWidth <= TARGET_RELATIVE_ERROR * mean;
+    }
+
+    /**
+     * Bytes reservados hasta ahora por el hilo actual, o {@link TimingStatistics#ALLOCATION_UNKNOWN}
+     * si la maquina virtual no permite medirlos.
+     */
+    static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : TimingStatistics.ALLOCATION_UNKNOWN;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        var bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            var threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,121 @@
+package ucm.erikkarl.tests;
+
+import java.util.Arrays;
+
+/**
+ * Estadisticas de los tiempos de ejecucion de un test medidos con {@link TimingEngine}. Todos los
+ * tiempos estan en milisegundos.
+ */
+public final class TimingStatistics {
+    /**
+     * Valor de {@link #getAllocatedBytesPerIteration()} si la maquina virtual no permite medir la
+     * memoria reservada por cada hilo.
+     */
+    public static final long ALLOCATION_UNKNOWN = -1;
+
+    private final double min;
+    private final double median;
+    private final double p90;
+    private final double p99;
+    private final double mean;
+    private final double standardDeviation;
+    private final int iterations;
+    private final long allocatedBytesPerIteration;
+
+    private TimingStatistics(double min, double median, double p90, double p99, double mean,
+                             double standardDeviation, int iterations, long allocatedBytesPerIteration) {
+        this.min = min;
+        this.median = median;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.mean = mean;
+        this.standardDeviation = standardDeviation;
+        this.iterations = iterations;
+        this.allocatedBytesPerIteration = allocatedBytesPerIteration;
+    }
+
+    /**
+     * Calcula las estadisticas de los <code>count</code> primeros tiempos de <code>samplesInNs</code>,
+     * medidos en nanosegundos. Ordena esos tiempos.
+     */
+    static TimingStatistics of(long[] samplesInNs, int count, long allocatedBytesPerIteration) {
+        if (count == 0)
+            throw new IllegalArgumentException("There must be at least one sample");
+        Arrays.sort(samplesInNs, 0, count);
+
+        double mean = 0;
+        for (int i = 0; i < count; i++)
+            mean += samplesInNs[i];
+        mean /= count;
+        double variance = 0;
+        for (int i = 0; i < count; i++)
+            variance += (samplesInNs[i] - mean) * (samplesInNs[i] - mean);
+        variance = count > 1 ? variance / (count - 1) : 0;
+
+        return new TimingStatistics(
+                toMs(samplesInNs[0]),
+                toMs(percentile(samplesInNs, count, 50)),
+                toMs(percentile(samplesInNs, count, 90)),
+                toMs(percentile(samplesInNs, count, 99)),
+                mean / 1000000.0,
+                Math.sqrt(variance) / 1000000.0,
+                count,
+                allocatedBytesPerIteration);
+    }
+
+    /**
+     * Crea unas estadisticas ya calculadas, por ejemplo para recuperar unas guardadas.
+     */
+    static TimingStatistics of(double min, double median, double p90, double p99, double mean,
+                               double standardDeviation, int iterations, long allocatedBytesPerIteration) {
+        return new TimingStatistics(min, median, p90, p99, mean, standardDeviation, iterations,
+                allocatedBytesPerIteration);
+    }
+
+    /**
+     * Percentil por el metodo del rango mas cercano sobre los tiempos ya ordenados.
+     */
+    private static long percentile(long[] sortedSamples, int count, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sortedSamples[Math.max(rank, 1) - 1];
+    }
+
+    private static double toMs(long ns) {
+        return ns / 1000000.0;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public double getP90() {
+        return p90;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return Bytes reservados de media en cada iteracion, o {@link #ALLOCATION_UNKNOWN}.
+     */
+    public long getAllocatedBytesPerIteration() {
+        return allocatedBytesPerIteration;
+    }
+}